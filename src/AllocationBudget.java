@@ -0,0 +1,70 @@
+import java.util.concurrent.atomic.AtomicLong;
+
+// A budget for what one run of a script allocates: instances and their fields, strings
+// built by concatenation or read from files, closures and bound methods, captured
+// variables, call frames and arrays and maps. Sizes are what those objects take on a 64
+// bit JVM with compressed references, roughly.
+//
+// This is not a measure of live heap. The interpreter can't see what the garbage
+// collector frees, so everything but call frames stays charged until the run ends, even
+// once it is garbage. Frames are given back when their call returns. A run's tasks share
+// its budget.
+public final class AllocationBudget {
+    static final int INSTANCE = 96;
+    static final int FIELD = 32;
+    static final int CLOSURE = 32;
+    static final int CELL = 16;
+    static final int MAP_ENTRY = 16;
+    static final int NUMBER = 8;
+    static final int REFERENCE = 4;
+    private static final int ARRAY_HEADER = 16;
+    private static final int STRING_HEADER = 40;
+
+    private final long limit;
+    private final AtomicLong inUse = new AtomicLong();
+    private final AtomicLong peak = new AtomicLong();
+    private final AtomicLong total = new AtomicLong();
+
+    // A limit of 0 only keeps count.
+    AllocationBudget(long limit) {
+        this.limit = limit > 0 ? limit : Long.MAX_VALUE;
+    }
+
+    static long array(int length, int elementSize) {
+        return ARRAY_HEADER + (long) length * elementSize;
+    }
+
+    static long string(int length) {
+        return STRING_HEADER + length;
+    }
+
+    // A charge that fails is not kept, so nothing has to give it back.
+    void allocate(Token at, long bytes) throws RuntimeError {
+        long used = inUse.addAndGet(bytes);
+        if (used > limit) {
+            inUse.addAndGet(-bytes);
+            throw new RuntimeError(at, "Exceeded the allocation limit of " + limit + " bytes.");
+        }
+        total.addAndGet(bytes);
+        if (used > peak.get()) peak.accumulateAndGet(used, Math::max);
+    }
+
+    void release(long bytes) {
+        inUse.addAndGet(-bytes);
+    }
+
+    // The most the run had charged at once.
+    public long peak() {
+        return peak.get();
+    }
+
+    // Everything the run allocated, including frames that have since been given back.
+    public long total() {
+        return total.get();
+    }
+
+    @Override
+    public String toString() {
+        return "peak " + peak() + " bytes, total " + total() + " bytes";
+    }
+}
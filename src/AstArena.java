@@ -0,0 +1,527 @@
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+// Generated by GenerateAst --arena. A program's AST packed into int arrays, which takes a
+// fraction of the memory of the tree. Nodes are a kind followed by one int per field,
+// children are referred to by their offset and null is -1. lower() rebuilds the tree.
+final class AstArena {
+    private static final int ASSIGN_EXPR = 0;
+    private static final int BINARY_EXPR = 1;
+    private static final int CALL_EXPR = 2;
+    private static final int GET_EXPR = 3;
+    private static final int SET_EXPR = 4;
+    private static final int SUPER_EXPR = 5;
+    private static final int THIS_EXPR = 6;
+    private static final int GROUPING_EXPR = 7;
+    private static final int LITERAL_EXPR = 8;
+    private static final int LOGICAL_EXPR = 9;
+    private static final int VARIABLE_EXPR = 10;
+    private static final int UNARY_EXPR = 11;
+    private static final int ARRAY_LITERAL_EXPR = 12;
+    private static final int INDEX_EXPR = 13;
+    private static final int INDEX_SET_EXPR = 14;
+    private static final int BLOCK_STMT = 15;
+    private static final int CLASS_STMT = 16;
+    private static final int IF_STMT = 17;
+    private static final int EXPRESSION_STMT = 18;
+    private static final int FUNCTION_STMT = 19;
+    private static final int RETURN_STMT = 20;
+    private static final int VAR_STMT = 21;
+    private static final int PRINT_STMT = 22;
+    private static final int WHILE_STMT = 23;
+    private static final int IMPORT_STMT = 24;
+
+    private final int[] nodes;
+    private final int[] lists;
+    // Four ints per token: type, lexeme, literal and line
+    private final int[] tokens;
+    // Three ints per binding: kind, index or name, and whether it is captured
+    private final int[] bindings;
+    private final String[] strings;
+    private final Object[] values;
+    private final int root;
+
+    private AstArena(Encoder encoder, int root) {
+        this.nodes = Arrays.copyOf(encoder.nodes, encoder.nodeCount);
+        this.lists = Arrays.copyOf(encoder.lists, encoder.listCount);
+        this.tokens = Arrays.copyOf(encoder.tokens, encoder.tokenCount);
+        this.bindings = Arrays.copyOf(encoder.bindings, encoder.bindingCount);
+        this.strings = encoder.strings.toArray(new String[0]);
+        this.values = encoder.values.toArray();
+        this.root = root;
+    }
+
+    static AstArena of(List<Stmt> statements) {
+        Encoder encoder = new Encoder();
+        int root = encoder.stmts(statements);
+        return new AstArena(encoder, root);
+    }
+
+    // A fresh tree each time, sharing nothing with other lowerings.
+    List<Stmt> lower() {
+        return lower(0);
+    }
+
+    // With lineDelta added to the line of every token, for code that has moved.
+    List<Stmt> lower(int lineDelta) {
+        return new Lowering(lineDelta).lowerStmts(root);
+    }
+
+    private static class Encoder implements Expr.Visitor<Integer>, Stmt.Visitor<Integer> {
+        int[] nodes = new int[1024];
+        int nodeCount = 0;
+        int[] lists = new int[256];
+        int listCount = 0;
+        int[] tokens = new int[1024];
+        int tokenCount = 0;
+        int[] bindings = new int[64];
+        int bindingCount = 0;
+        final List<String> strings = new ArrayList<>();
+        final List<Object> values = new ArrayList<>();
+        private final Map<String, Integer> stringIds = new HashMap<>();
+        private final Map<Binding, Integer> bindingIds = new IdentityHashMap<>();
+        // Globals are bound by name, so every use of one name can share a Binding
+        private final Map<String, Integer> globalIds = new HashMap<>();
+
+        private int node(int... fields) {
+            if (nodeCount + fields.length > nodes.length) nodes = Arrays.copyOf(nodes, Math.max(nodes.length * 2, nodeCount + fields.length));
+            int at = nodeCount;
+            System.arraycopy(fields, 0, nodes, at, fields.length);
+            nodeCount += fields.length;
+            return at;
+        }
+
+        private int list(int[] items) {
+            if (listCount + items.length + 1 > lists.length) lists = Arrays.copyOf(lists, Math.max(lists.length * 2, listCount + items.length + 1));
+            int at = listCount;
+            lists[at] = items.length;
+            System.arraycopy(items, 0, lists, at + 1, items.length);
+            listCount += items.length + 1;
+            return at;
+        }
+
+        int expr(Expr expr) {
+            if (expr == null) return -1;
+            try {
+                return expr.accept(this);
+            } catch (RuntimeError e) {
+                // Encoding never fails
+                throw new IllegalStateException(e);
+            }
+        }
+
+        int stmt(Stmt stmt) {
+            if (stmt == null) return -1;
+            try {
+                return stmt.accept(this);
+            } catch (RuntimeError e) {
+                throw new IllegalStateException(e);
+            }
+        }
+
+        int exprs(List<Expr> exprs) {
+            int[] items = new int[exprs.size()];
+            for (int i = 0; i < items.length; i++) items[i] = expr(exprs.get(i));
+            return list(items);
+        }
+
+        int stmts(List<? extends Stmt> stmts) {
+            int[] items = new int[stmts.size()];
+            for (int i = 0; i < items.length; i++) items[i] = stmt(stmts.get(i));
+            return list(items);
+        }
+
+        int token(Token token) {
+            if (tokenCount + 4 > tokens.length) tokens = Arrays.copyOf(tokens, tokens.length * 2);
+            int at = tokenCount;
+            tokens[at] = token.type.ordinal();
+            tokens[at + 1] = string(token.lexeme);
+            tokens[at + 2] = value(token.literal);
+            tokens[at + 3] = token.line;
+            tokenCount += 4;
+            return at;
+        }
+
+        int tokens(List<Token> tokens) {
+            int[] items = new int[tokens.size()];
+            for (int i = 0; i < items.length; i++) items[i] = token(tokens.get(i));
+            return list(items);
+        }
+
+        int binding(Binding binding) {
+            if (binding == null) return -1;
+            boolean global = binding.kind == Binding.Kind.GLOBAL;
+            Integer seen = global ? globalIds.get(binding.name) : bindingIds.get(binding);
+            if (seen != null) return seen;
+
+            if (bindingCount + 3 > bindings.length) bindings = Arrays.copyOf(bindings, bindings.length * 2);
+            int at = bindingCount;
+            bindings[at] = binding.kind.ordinal();
+            bindings[at + 1] = global ? string(binding.name) : binding.index;
+            bindings[at + 2] = binding.captured ? 1 : 0;
+            bindingCount += 3;
+            if (global) {
+                globalIds.put(binding.name, at);
+            } else {
+                bindingIds.put(binding, at);
+            }
+            return at;
+        }
+
+        int bindings(Binding[] bindings) {
+            if (bindings == null) return -1;
+            int[] items = new int[bindings.length];
+            for (int i = 0; i < items.length; i++) items[i] = binding(bindings[i]);
+            return list(items);
+        }
+
+        // A body that was never parsed is kept as its tokens, behind a flag for whether it is a
+        // method. Once compiled it is an ordinary body, and there is no LazyBody to keep.
+        int lazy(LazyBody lazy) {
+            if (lazy == null || lazy.compiled()) return -1;
+            int[] items = new int[lazy.tokens.size() + 1];
+            items[0] = lazy.method ? 1 : 0;
+            for (int i = 1; i < items.length; i++) items[i] = token(lazy.tokens.get(i - 1));
+            return list(items);
+        }
+
+        int string(String string) {
+            if (string == null) return -1;
+            return stringIds.computeIfAbsent(string, s -> {
+                strings.add(s);
+                return strings.size() - 1;
+            });
+        }
+
+        int value(Object value) {
+            if (value == null) return -1;
+            values.add(value);
+            return values.size() - 1;
+        }
+
+        @Override
+        public Integer visitAssignExpr(Expr.Assign expr) {
+            return node(ASSIGN_EXPR, token(expr.name), expr(expr.value), binding(expr.binding));
+        }
+
+        @Override
+        public Integer visitBinaryExpr(Expr.Binary expr) {
+            return node(BINARY_EXPR, expr(expr.left), token(expr.operator), expr(expr.right));
+        }
+
+        @Override
+        public Integer visitCallExpr(Expr.Call expr) {
+            return node(CALL_EXPR, expr(expr.callee), token(expr.paren), exprs(expr.arguments));
+        }
+
+        @Override
+        public Integer visitGetExpr(Expr.Get expr) {
+            return node(GET_EXPR, expr(expr.object), token(expr.name));
+        }
+
+        @Override
+        public Integer visitSetExpr(Expr.Set expr) {
+            return node(SET_EXPR, expr(expr.object), token(expr.name), expr(expr.value));
+        }
+
+        @Override
+        public Integer visitSuperExpr(Expr.Super expr) {
+            return node(SUPER_EXPR, token(expr.keyword), token(expr.method), binding(expr.binding), binding(expr.thisBinding));
+        }
+
+        @Override
+        public Integer visitThisExpr(Expr.This expr) {
+            return node(THIS_EXPR, token(expr.keyword), binding(expr.binding));
+        }
+
+        @Override
+        public Integer visitGroupingExpr(Expr.Grouping expr) {
+            return node(GROUPING_EXPR, expr(expr.expression));
+        }
+
+        @Override
+        public Integer visitLiteralExpr(Expr.Literal expr) {
+            return node(LITERAL_EXPR, value(expr.value));
+        }
+
+        @Override
+        public Integer visitLogicalExpr(Expr.Logical expr) {
+            return node(LOGICAL_EXPR, expr(expr.left), token(expr.operator), expr(expr.right));
+        }
+
+        @Override
+        public Integer visitVariableExpr(Expr.Variable expr) {
+            return node(VARIABLE_EXPR, token(expr.name), binding(expr.binding));
+        }
+
+        @Override
+        public Integer visitUnaryExpr(Expr.Unary expr) {
+            return node(UNARY_EXPR, token(expr.operator), expr(expr.right));
+        }
+
+        @Override
+        public Integer visitArrayLiteralExpr(Expr.ArrayLiteral expr) {
+            return node(ARRAY_LITERAL_EXPR, token(expr.bracket), exprs(expr.elements));
+        }
+
+        @Override
+        public Integer visitIndexExpr(Expr.Index expr) {
+            return node(INDEX_EXPR, expr(expr.object), token(expr.bracket), expr(expr.index));
+        }
+
+        @Override
+        public Integer visitIndexSetExpr(Expr.IndexSet expr) {
+            return node(INDEX_SET_EXPR, expr(expr.object), token(expr.bracket), expr(expr.index), expr(expr.value));
+        }
+
+        @Override
+        public Integer visitBlockStmt(Stmt.Block stmt) {
+            return node(BLOCK_STMT, stmts(stmt.statements));
+        }
+
+        @Override
+        public Integer visitClassStmt(Stmt.Class stmt) {
+            return node(CLASS_STMT, token(stmt.name), expr(stmt.superclass), stmts(stmt.methods), binding(stmt.binding), binding(stmt.superBinding));
+        }
+
+        @Override
+        public Integer visitIfStmt(Stmt.If stmt) {
+            return node(IF_STMT, expr(stmt.condition), stmt(stmt.thenBranch), stmt(stmt.elseBranch));
+        }
+
+        @Override
+        public Integer visitExpressionStmt(Stmt.Expression stmt) {
+            return node(EXPRESSION_STMT, expr(stmt.expression));
+        }
+
+        @Override
+        public Integer visitFunctionStmt(Stmt.Function stmt) {
+            return node(FUNCTION_STMT, token(stmt.name), tokens(stmt.params), stmts(stmt.body), binding(stmt.binding), binding(stmt.receiver), bindings(stmt.parameters), bindings(stmt.captures), stmt.frameSize, lazy(stmt.lazy));
+        }
+
+        @Override
+        public Integer visitReturnStmt(Stmt.Return stmt) {
+            return node(RETURN_STMT, token(stmt.keyword), expr(stmt.value));
+        }
+
+        @Override
+        public Integer visitVarStmt(Stmt.Var stmt) {
+            return node(VAR_STMT, token(stmt.name), expr(stmt.initializer), binding(stmt.binding));
+        }
+
+        @Override
+        public Integer visitPrintStmt(Stmt.Print stmt) {
+            return node(PRINT_STMT, expr(stmt.expression));
+        }
+
+        @Override
+        public Integer visitWhileStmt(Stmt.While stmt) {
+            return node(WHILE_STMT, token(stmt.keyword), expr(stmt.condition), stmt(stmt.body));
+        }
+
+        @Override
+        public Integer visitImportStmt(Stmt.Import stmt) {
+            return node(IMPORT_STMT, token(stmt.keyword), token(stmt.path));
+        }
+    }
+
+    private class Lowering {
+        // One Binding per arena binding, so nodes that shared one still do
+        private final Binding[] lowered = new Binding[bindings.length];
+        private final int lineDelta;
+
+        Lowering(int lineDelta) {
+            this.lineDelta = lineDelta;
+        }
+
+        private Expr lowerExpr(int at) {
+            if (at < 0) return null;
+            switch (nodes[at]) {
+                case ASSIGN_EXPR -> {
+                    Expr.Assign expr = new Expr.Assign(lowerToken(nodes[at + 1]), lowerExpr(nodes[at + 2]));
+                    expr.binding = lowerBinding(nodes[at + 3]);
+                    return expr;
+                }
+                case BINARY_EXPR -> {
+                    Expr.Binary expr = new Expr.Binary(lowerExpr(nodes[at + 1]), lowerToken(nodes[at + 2]), lowerExpr(nodes[at + 3]));
+                    return expr;
+                }
+                case CALL_EXPR -> {
+                    Expr.Call expr = new Expr.Call(lowerExpr(nodes[at + 1]), lowerToken(nodes[at + 2]), lowerExprs(nodes[at + 3]));
+                    return expr;
+                }
+                case GET_EXPR -> {
+                    Expr.Get expr = new Expr.Get(lowerExpr(nodes[at + 1]), lowerToken(nodes[at + 2]));
+                    return expr;
+                }
+                case SET_EXPR -> {
+                    Expr.Set expr = new Expr.Set(lowerExpr(nodes[at + 1]), lowerToken(nodes[at + 2]), lowerExpr(nodes[at + 3]));
+                    return expr;
+                }
+                case SUPER_EXPR -> {
+                    Expr.Super expr = new Expr.Super(lowerToken(nodes[at + 1]), lowerToken(nodes[at + 2]));
+                    expr.binding = lowerBinding(nodes[at + 3]);
+                    expr.thisBinding = lowerBinding(nodes[at + 4]);
+                    return expr;
+                }
+                case THIS_EXPR -> {
+                    Expr.This expr = new Expr.This(lowerToken(nodes[at + 1]));
+                    expr.binding = lowerBinding(nodes[at + 2]);
+                    return expr;
+                }
+                case GROUPING_EXPR -> {
+                    Expr.Grouping expr = new Expr.Grouping(lowerExpr(nodes[at + 1]));
+                    return expr;
+                }
+                case LITERAL_EXPR -> {
+                    Expr.Literal expr = new Expr.Literal(lowerValue(nodes[at + 1]));
+                    return expr;
+                }
+                case LOGICAL_EXPR -> {
+                    Expr.Logical expr = new Expr.Logical(lowerExpr(nodes[at + 1]), lowerToken(nodes[at + 2]), lowerExpr(nodes[at + 3]));
+                    return expr;
+                }
+                case VARIABLE_EXPR -> {
+                    Expr.Variable expr = new Expr.Variable(lowerToken(nodes[at + 1]));
+                    expr.binding = lowerBinding(nodes[at + 2]);
+                    return expr;
+                }
+                case UNARY_EXPR -> {
+                    Expr.Unary expr = new Expr.Unary(lowerToken(nodes[at + 1]), lowerExpr(nodes[at + 2]));
+                    return expr;
+                }
+                case ARRAY_LITERAL_EXPR -> {
+                    Expr.ArrayLiteral expr = new Expr.ArrayLiteral(lowerToken(nodes[at + 1]), lowerExprs(nodes[at + 2]));
+                    return expr;
+                }
+                case INDEX_EXPR -> {
+                    Expr.Index expr = new Expr.Index(lowerExpr(nodes[at + 1]), lowerToken(nodes[at + 2]), lowerExpr(nodes[at + 3]));
+                    return expr;
+                }
+                case INDEX_SET_EXPR -> {
+                    Expr.IndexSet expr = new Expr.IndexSet(lowerExpr(nodes[at + 1]), lowerToken(nodes[at + 2]), lowerExpr(nodes[at + 3]), lowerExpr(nodes[at + 4]));
+                    return expr;
+                }
+            }
+            throw new IllegalStateException("Not a expr at " + at + ".");
+        }
+
+        private Stmt lowerStmt(int at) {
+            if (at < 0) return null;
+            switch (nodes[at]) {
+                case BLOCK_STMT -> {
+                    Stmt.Block stmt = new Stmt.Block(lowerStmts(nodes[at + 1]));
+                    return stmt;
+                }
+                case CLASS_STMT -> {
+                    Stmt.Class stmt = new Stmt.Class(lowerToken(nodes[at + 1]), (Expr.Variable) lowerExpr(nodes[at + 2]), lowerStmts(nodes[at + 3]));
+                    stmt.binding = lowerBinding(nodes[at + 4]);
+                    stmt.superBinding = lowerBinding(nodes[at + 5]);
+                    return stmt;
+                }
+                case IF_STMT -> {
+                    Stmt.If stmt = new Stmt.If(lowerExpr(nodes[at + 1]), lowerStmt(nodes[at + 2]), lowerStmt(nodes[at + 3]));
+                    return stmt;
+                }
+                case EXPRESSION_STMT -> {
+                    Stmt.Expression stmt = new Stmt.Expression(lowerExpr(nodes[at + 1]));
+                    return stmt;
+                }
+                case FUNCTION_STMT -> {
+                    Stmt.Function stmt = new Stmt.Function(lowerToken(nodes[at + 1]), lowerTokens(nodes[at + 2]), lowerStmts(nodes[at + 3]));
+                    stmt.binding = lowerBinding(nodes[at + 4]);
+                    stmt.receiver = lowerBinding(nodes[at + 5]);
+                    stmt.parameters = lowerBindings(nodes[at + 6]);
+                    stmt.captures = lowerBindings(nodes[at + 7]);
+                    stmt.frameSize = nodes[at + 8];
+                    stmt.lazy = lowerLazy(nodes[at + 9]);
+                    return stmt;
+                }
+                case RETURN_STMT -> {
+                    Stmt.Return stmt = new Stmt.Return(lowerToken(nodes[at + 1]), lowerExpr(nodes[at + 2]));
+                    return stmt;
+                }
+                case VAR_STMT -> {
+                    Stmt.Var stmt = new Stmt.Var(lowerToken(nodes[at + 1]), lowerExpr(nodes[at + 2]));
+                    stmt.binding = lowerBinding(nodes[at + 3]);
+                    return stmt;
+                }
+                case PRINT_STMT -> {
+                    Stmt.Print stmt = new Stmt.Print(lowerExpr(nodes[at + 1]));
+                    return stmt;
+                }
+                case WHILE_STMT -> {
+                    Stmt.While stmt = new Stmt.While(lowerToken(nodes[at + 1]), lowerExpr(nodes[at + 2]), lowerStmt(nodes[at + 3]));
+                    return stmt;
+                }
+                case IMPORT_STMT -> {
+                    Stmt.Import stmt = new Stmt.Import(lowerToken(nodes[at + 1]), lowerToken(nodes[at + 2]));
+                    return stmt;
+                }
+            }
+            throw new IllegalStateException("Not a stmt at " + at + ".");
+        }
+
+        private List<Expr> lowerExprs(int at) {
+            List<Expr> exprs = new ArrayList<>(lists[at]);
+            for (int i = 1; i <= lists[at]; i++) exprs.add(lowerExpr(lists[at + i]));
+            return exprs;
+        }
+
+        @SuppressWarnings("unchecked")
+        private <T extends Stmt> List<T> lowerStmts(int at) {
+            List<T> stmts = new ArrayList<>(lists[at]);
+            for (int i = 1; i <= lists[at]; i++) stmts.add((T) lowerStmt(lists[at + i]));
+            return stmts;
+        }
+
+        private Token lowerToken(int at) {
+            String lexeme = tokens[at + 1] < 0 ? null : strings[tokens[at + 1]];
+            return new Token(TokenType.values()[tokens[at]], lexeme, lowerValue(tokens[at + 2]), tokens[at + 3] + lineDelta);
+        }
+
+        private List<Token> lowerTokens(int at) {
+            List<Token> tokens = new ArrayList<>(lists[at]);
+            for (int i = 1; i <= lists[at]; i++) tokens.add(lowerToken(lists[at + i]));
+            return tokens;
+        }
+
+        private Binding lowerBinding(int at) {
+            if (at < 0) return null;
+            Binding binding = lowered[at];
+            if (binding != null) return binding;
+
+            Binding.Kind kind = Binding.Kind.values()[bindings[at]];
+            if (kind == Binding.Kind.GLOBAL) {
+                binding = Binding.global(strings[bindings[at + 1]]);
+            } else {
+                binding = new Binding(kind, bindings[at + 1]);
+                binding.captured = bindings[at + 2] == 1;
+            }
+            lowered[at] = binding;
+            return binding;
+        }
+
+        private Binding[] lowerBindings(int at) {
+            if (at < 0) return null;
+            Binding[] result = new Binding[lists[at]];
+            for (int i = 0; i < result.length; i++) result[i] = lowerBinding(lists[at + i + 1]);
+            return result;
+        }
+
+        private LazyBody lowerLazy(int at) {
+            if (at < 0) return null;
+            List<Token> body = new ArrayList<>(lists[at] - 1);
+            for (int i = 2; i <= lists[at]; i++) body.add(lowerToken(lists[at + i]));
+            return new LazyBody(body, lists[at + 1] == 1);
+        }
+
+        private Object lowerValue(int at) {
+            return at < 0 ? null : values[at];
+        }
+    }
+}
@@ -0,0 +1,252 @@
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+// Reads back an AST written by AstWriter, bindings included, so the result can be run
+// without going through the Scanner, Parser or Resolver. Malformed input fails with an
+// unchecked exception.
+class AstReader {
+    private final ByteBuffer in;
+    private final List<String> strings = new ArrayList<>();
+    private final List<Binding> bindings = new ArrayList<>();
+    private int line = 0;
+
+    AstReader(ByteBuffer in) {
+        this.in = in;
+    }
+
+    boolean atEnd() {
+        return !in.hasRemaining();
+    }
+
+    <T extends Stmt> List<T> readStatements(Class<T> type) {
+        int count = readInt();
+        List<T> statements = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            statements.add(type.cast(readStmt()));
+        }
+        return statements;
+    }
+
+    Stmt readStmt() {
+        int tag = readInt();
+        switch (tag) {
+            case AstWriter.NULL -> {
+                return null;
+            }
+            case AstWriter.BLOCK -> {
+                return new Stmt.Block(readStatements(Stmt.class));
+            }
+            case AstWriter.CLASS -> {
+                Stmt.Class stmt = new Stmt.Class(readToken(), (Expr.Variable) readExpr(), readStatements(Stmt.Function.class));
+                stmt.binding = readBinding();
+                stmt.superBinding = readBinding();
+                return stmt;
+            }
+            case AstWriter.IF -> {
+                return new Stmt.If(readExpr(), readStmt(), readStmt());
+            }
+            case AstWriter.EXPRESSION -> {
+                return new Stmt.Expression(readExpr());
+            }
+            case AstWriter.FUNCTION -> {
+                Stmt.Function stmt = new Stmt.Function(readToken(), readTokens(), readStatements(Stmt.class));
+                stmt.binding = readBinding();
+                stmt.receiver = readBinding();
+                stmt.parameters = readBindings();
+                stmt.captures = readBindings();
+                stmt.frameSize = readInt();
+                return stmt;
+            }
+            case AstWriter.LAZY_FUNCTION -> {
+                Stmt.Function stmt = new Stmt.Function(readToken(), readTokens(), new ArrayList<>());
+                stmt.lazy = new LazyBody(readTokens(), in.get() != 0);
+                stmt.binding = readBinding();
+                stmt.captures = new Binding[0];
+                return stmt;
+            }
+            case AstWriter.RETURN -> {
+                return new Stmt.Return(readToken(), readExpr());
+            }
+            case AstWriter.VAR -> {
+                Stmt.Var stmt = new Stmt.Var(readToken(), readExpr());
+                stmt.binding = readBinding();
+                return stmt;
+            }
+            case AstWriter.PRINT -> {
+                return new Stmt.Print(readExpr());
+            }
+            case AstWriter.WHILE -> {
+                return new Stmt.While(readToken(), readExpr(), readStmt());
+            }
+            case AstWriter.IMPORT -> {
+                return new Stmt.Import(readToken(), readToken());
+            }
+        }
+        throw new IllegalArgumentException("Unknown statement tag " + tag + ".");
+    }
+
+    private Expr readExpr() {
+        int tag = readInt();
+        switch (tag) {
+            case AstWriter.NULL -> {
+                return null;
+            }
+            case AstWriter.ASSIGN -> {
+                Expr.Assign expr = new Expr.Assign(readToken(), readExpr());
+                expr.binding = readBinding();
+                return expr;
+            }
+            case AstWriter.BINARY -> {
+                return new Expr.Binary(readExpr(), readToken(), readExpr());
+            }
+            case AstWriter.CALL -> {
+                return new Expr.Call(readExpr(), readToken(), readExprs());
+            }
+            case AstWriter.GET -> {
+                return new Expr.Get(readExpr(), readToken());
+            }
+            case AstWriter.SET -> {
+                return new Expr.Set(readExpr(), readToken(), readExpr());
+            }
+            case AstWriter.SUPER -> {
+                Expr.Super expr = new Expr.Super(readToken(), readToken());
+                expr.binding = readBinding();
+                expr.thisBinding = readBinding();
+                return expr;
+            }
+            case AstWriter.THIS -> {
+                Expr.This expr = new Expr.This(readToken());
+                expr.binding = readBinding();
+                return expr;
+            }
+            case AstWriter.GROUPING -> {
+                return new Expr.Grouping(readExpr());
+            }
+            case AstWriter.LITERAL -> {
+                return new Expr.Literal(readValue());
+            }
+            case AstWriter.LOGICAL -> {
+                return new Expr.Logical(readExpr(), readToken(), readExpr());
+            }
+            case AstWriter.VARIABLE -> {
+                Expr.Variable expr = new Expr.Variable(readToken());
+                expr.binding = readBinding();
+                return expr;
+            }
+            case AstWriter.UNARY -> {
+                return new Expr.Unary(readToken(), readExpr());
+            }
+            case AstWriter.ARRAY_LITERAL -> {
+                return new Expr.ArrayLiteral(readToken(), readExprs());
+            }
+            case AstWriter.INDEX -> {
+                return new Expr.Index(readExpr(), readToken(), readExpr());
+            }
+            case AstWriter.INDEX_SET -> {
+                return new Expr.IndexSet(readExpr(), readToken(), readExpr(), readExpr());
+            }
+        }
+        throw new IllegalArgumentException("Unknown expression tag " + tag + ".");
+    }
+
+    private List<Expr> readExprs() {
+        int count = readInt();
+        List<Expr> exprs = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            exprs.add(readExpr());
+        }
+        return exprs;
+    }
+
+    private Token readToken() {
+        TokenType type = TokenType.valueOf(readString());
+        String lexeme = readString();
+        Object literal = type == TokenType.STRING || type == TokenType.NUMBER ? readValue() : null;
+
+        int delta = readInt();
+        line += (delta >>> 1) ^ -(delta & 1);
+        return new Token(type, lexeme, literal, line);
+    }
+
+    private List<Token> readTokens() {
+        int count = readInt();
+        List<Token> tokens = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            tokens.add(readToken());
+        }
+        return tokens;
+    }
+
+    private Object readValue() {
+        int tag = readInt();
+        switch (tag) {
+            case AstWriter.NIL -> {
+                return null;
+            }
+            case AstWriter.TRUE -> {
+                return true;
+            }
+            case AstWriter.FALSE -> {
+                return false;
+            }
+            case AstWriter.NUMBER -> {
+                return Double.longBitsToDouble(in.getLong());
+            }
+            case AstWriter.STRING -> {
+                return readString();
+            }
+        }
+        throw new IllegalArgumentException("Unknown value tag " + tag + ".");
+    }
+
+    private Binding readBinding() {
+        int id = readInt();
+        if (id == AstWriter.NULL) return null;
+        if (id <= bindings.size()) return bindings.get(id - 1);
+        if (id != bindings.size() + 1) throw new IllegalArgumentException("Binding " + id + " is out of order.");
+
+        Binding.Kind kind = Binding.Kind.values()[readInt()];
+        Binding binding;
+        if (kind == Binding.Kind.GLOBAL) {
+            binding = Binding.global(readString());
+        } else {
+            binding = new Binding(kind, readInt());
+            binding.captured = in.get() != 0;
+        }
+        bindings.add(binding);
+        return binding;
+    }
+
+    private Binding[] readBindings() {
+        Binding[] result = new Binding[readInt()];
+        for (int i = 0; i < result.length; i++) {
+            result[i] = readBinding();
+        }
+        return result;
+    }
+
+    String readString() {
+        int id = readInt();
+        if (id == AstWriter.NULL) return null;
+        if (id <= strings.size()) return strings.get(id - 1);
+        if (id != strings.size() + 1) throw new IllegalArgumentException("String " + id + " is out of order.");
+
+        byte[] bytes = new byte[readInt()];
+        in.get(bytes);
+        String string = new String(bytes, StandardCharsets.UTF_8);
+        strings.add(string);
+        return string;
+    }
+
+    int readInt() {
+        int value = 0;
+        for (int shift = 0; ; shift += 7) {
+            byte b = in.get();
+            value |= (b & 0x7F) << shift;
+            if (b >= 0) return value;
+            if (shift > 28) throw new IllegalArgumentException("Malformed number.");
+        }
+    }
+}
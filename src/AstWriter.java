@@ -0,0 +1,400 @@
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+// Serializes a resolved AST for AstReader. Every node is written as a tag followed by its
+// fields in declaration order, including the Resolver's bindings. Strings and bindings
+// are written once and referred back to by number afterwards, which keeps the output small
+// and preserves which nodes share a Binding. Token lines are written as the difference
+// from the previous token's line.
+class AstWriter implements Expr.Visitor<Void>, Stmt.Visitor<Void> {
+    // Node tags. AstReader has to agree with these, so changing them means bumping
+    // LoxcCache.VERSION.
+    static final int NULL = 0;
+    static final int ASSIGN = 1, BINARY = 2, CALL = 3, GET = 4, SET = 5, SUPER = 6, THIS = 7, GROUPING = 8,
+            LITERAL = 9, LOGICAL = 10, VARIABLE = 11, UNARY = 12, ARRAY_LITERAL = 13, INDEX = 14, INDEX_SET = 15;
+    static final int BLOCK = 32, CLASS = 33, IF = 34, EXPRESSION = 35, FUNCTION = 36, RETURN = 37, VAR = 38,
+            PRINT = 39, WHILE = 40, IMPORT = 41, LAZY_FUNCTION = 42;
+
+    // Literal value tags
+    static final int NIL = 0, TRUE = 1, FALSE = 2, NUMBER = 3, STRING = 4;
+
+    private final ByteArrayOutputStream out = new ByteArrayOutputStream();
+    private final Map<String, Integer> strings = new HashMap<>();
+    private final Map<Binding, Integer> bindings = new IdentityHashMap<>();
+    // Globals are bound by name, so every use of one name can share a Binding
+    private final Map<String, Integer> globals = new HashMap<>();
+    private int line = 0;
+
+    byte[] toByteArray() {
+        return out.toByteArray();
+    }
+
+    void writeStatements(List<? extends Stmt> statements) {
+        writeInt(statements.size());
+        for (Stmt statement : statements) {
+            writeStmt(statement);
+        }
+    }
+
+    void writeStmt(Stmt statement) {
+        if (statement == null) {
+            writeInt(NULL);
+            return;
+        }
+        try {
+            statement.accept(this);
+        } catch (RuntimeError e) {
+            // Writing never fails
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private void writeExpr(Expr expr) {
+        if (expr == null) {
+            writeInt(NULL);
+            return;
+        }
+        try {
+            expr.accept(this);
+        } catch (RuntimeError e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private void writeExprs(List<Expr> exprs) {
+        writeInt(exprs.size());
+        for (Expr expr : exprs) {
+            writeExpr(expr);
+        }
+    }
+
+    private void writeToken(Token token) {
+        writeString(token.type.name());
+        writeString(token.lexeme);
+        if (token.type == TokenType.STRING || token.type == TokenType.NUMBER) writeValue(token.literal);
+
+        int delta = token.line - line;
+        writeInt((delta << 1) ^ (delta >> 31));
+        line = token.line;
+    }
+
+    private void writeTokens(List<Token> tokens) {
+        writeInt(tokens.size());
+        for (Token token : tokens) {
+            writeToken(token);
+        }
+    }
+
+    private void writeValue(Object value) {
+        if (value == null) {
+            writeInt(NIL);
+        } else if (value instanceof Boolean bool) {
+            writeInt(bool ? TRUE : FALSE);
+        } else if (value instanceof Double number) {
+            writeInt(NUMBER);
+            long bits = Double.doubleToRawLongBits(number);
+            for (int shift = 56; shift >= 0; shift -= 8) {
+                out.write((int) (bits >>> shift));
+            }
+        } else {
+            writeInt(STRING);
+            writeString((String) value);
+        }
+    }
+
+    private void writeBinding(Binding binding) {
+        if (binding == null) {
+            writeInt(NULL);
+            return;
+        }
+
+        Integer seen = binding.kind == Binding.Kind.GLOBAL ? globals.get(binding.name) : bindings.get(binding);
+        if (seen != null) {
+            writeInt(seen);
+            return;
+        }
+        int id = bindings.size() + globals.size() + 1;
+        if (binding.kind == Binding.Kind.GLOBAL) {
+            globals.put(binding.name, id);
+        } else {
+            bindings.put(binding, id);
+        }
+        writeInt(id);
+
+        writeInt(binding.kind.ordinal());
+        if (binding.kind == Binding.Kind.GLOBAL) {
+            writeString(binding.name);
+        } else {
+            writeInt(binding.index);
+            out.write(binding.captured ? 1 : 0);
+        }
+    }
+
+    private void writeBindings(Binding[] bindings) {
+        writeInt(bindings.length);
+        for (Binding binding : bindings) {
+            writeBinding(binding);
+        }
+    }
+
+    void writeString(String string) {
+        if (string == null) {
+            writeInt(NULL);
+            return;
+        }
+
+        Integer seen = strings.get(string);
+        if (seen != null) {
+            writeInt(seen);
+            return;
+        }
+        int id = strings.size() + 1;
+        strings.put(string, id);
+        writeInt(id);
+
+        byte[] bytes = string.getBytes(StandardCharsets.UTF_8);
+        writeInt(bytes.length);
+        out.writeBytes(bytes);
+    }
+
+    // Unsigned LEB128, since nearly every number written is small
+    void writeInt(int value) {
+        while ((value & ~0x7F) != 0) {
+            out.write((value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        out.write(value);
+    }
+
+    @Override
+    public Void visitAssignExpr(Expr.Assign expr) {
+        writeInt(ASSIGN);
+        writeToken(expr.name);
+        writeExpr(expr.value);
+        writeBinding(expr.binding);
+        return null;
+    }
+
+    @Override
+    public Void visitBinaryExpr(Expr.Binary expr) {
+        writeInt(BINARY);
+        writeExpr(expr.left);
+        writeToken(expr.operator);
+        writeExpr(expr.right);
+        return null;
+    }
+
+    @Override
+    public Void visitCallExpr(Expr.Call expr) {
+        writeInt(CALL);
+        writeExpr(expr.callee);
+        writeToken(expr.paren);
+        writeExprs(expr.arguments);
+        return null;
+    }
+
+    @Override
+    public Void visitGetExpr(Expr.Get expr) {
+        writeInt(GET);
+        writeExpr(expr.object);
+        writeToken(expr.name);
+        return null;
+    }
+
+    @Override
+    public Void visitSetExpr(Expr.Set expr) {
+        writeInt(SET);
+        writeExpr(expr.object);
+        writeToken(expr.name);
+        writeExpr(expr.value);
+        return null;
+    }
+
+    @Override
+    public Void visitSuperExpr(Expr.Super expr) {
+        writeInt(SUPER);
+        writeToken(expr.keyword);
+        writeToken(expr.method);
+        writeBinding(expr.binding);
+        writeBinding(expr.thisBinding);
+        return null;
+    }
+
+    @Override
+    public Void visitThisExpr(Expr.This expr) {
+        writeInt(THIS);
+        writeToken(expr.keyword);
+        writeBinding(expr.binding);
+        return null;
+    }
+
+    @Override
+    public Void visitGroupingExpr(Expr.Grouping expr) {
+        writeInt(GROUPING);
+        writeExpr(expr.expression);
+        return null;
+    }
+
+    @Override
+    public Void visitLiteralExpr(Expr.Literal expr) {
+        writeInt(LITERAL);
+        writeValue(expr.value);
+        return null;
+    }
+
+    @Override
+    public Void visitLogicalExpr(Expr.Logical expr) {
+        writeInt(LOGICAL);
+        writeExpr(expr.left);
+        writeToken(expr.operator);
+        writeExpr(expr.right);
+        return null;
+    }
+
+    @Override
+    public Void visitVariableExpr(Expr.Variable expr) {
+        writeInt(VARIABLE);
+        writeToken(expr.name);
+        writeBinding(expr.binding);
+        return null;
+    }
+
+    @Override
+    public Void visitUnaryExpr(Expr.Unary expr) {
+        writeInt(UNARY);
+        writeToken(expr.operator);
+        writeExpr(expr.right);
+        return null;
+    }
+
+    @Override
+    public Void visitArrayLiteralExpr(Expr.ArrayLiteral expr) {
+        writeInt(ARRAY_LITERAL);
+        writeToken(expr.bracket);
+        writeExprs(expr.elements);
+        return null;
+    }
+
+    @Override
+    public Void visitIndexExpr(Expr.Index expr) {
+        writeInt(INDEX);
+        writeExpr(expr.object);
+        writeToken(expr.bracket);
+        writeExpr(expr.index);
+        return null;
+    }
+
+    @Override
+    public Void visitIndexSetExpr(Expr.IndexSet expr) {
+        writeInt(INDEX_SET);
+        writeExpr(expr.object);
+        writeToken(expr.bracket);
+        writeExpr(expr.index);
+        writeExpr(expr.value);
+        return null;
+    }
+
+    @Override
+    public Void visitBlockStmt(Stmt.Block stmt) {
+        writeInt(BLOCK);
+        writeStatements(stmt.statements);
+        return null;
+    }
+
+    @Override
+    public Void visitClassStmt(Stmt.Class stmt) {
+        writeInt(CLASS);
+        writeToken(stmt.name);
+        writeExpr(stmt.superclass);
+        writeStatements(stmt.methods);
+        writeBinding(stmt.binding);
+        writeBinding(stmt.superBinding);
+        return null;
+    }
+
+    @Override
+    public Void visitIfStmt(Stmt.If stmt) {
+        writeInt(IF);
+        writeExpr(stmt.condition);
+        writeStmt(stmt.thenBranch);
+        writeStmt(stmt.elseBranch);
+        return null;
+    }
+
+    @Override
+    public Void visitExpressionStmt(Stmt.Expression stmt) {
+        writeInt(EXPRESSION);
+        writeExpr(stmt.expression);
+        return null;
+    }
+
+    @Override
+    public Void visitFunctionStmt(Stmt.Function stmt) {
+        if (stmt.lazy != null && !stmt.lazy.compiled()) {
+            // Still unparsed, so the body goes out as tokens
+            writeInt(LAZY_FUNCTION);
+            writeToken(stmt.name);
+            writeTokens(stmt.params);
+            writeTokens(stmt.lazy.tokens);
+            out.write(stmt.lazy.method ? 1 : 0);
+            writeBinding(stmt.binding);
+            return null;
+        }
+
+        writeInt(FUNCTION);
+        writeToken(stmt.name);
+        writeTokens(stmt.params);
+        writeStatements(stmt.body);
+        writeBinding(stmt.binding);
+        writeBinding(stmt.receiver);
+        writeBindings(stmt.parameters);
+        writeBindings(stmt.captures);
+        writeInt(stmt.frameSize);
+        return null;
+    }
+
+    @Override
+    public Void visitReturnStmt(Stmt.Return stmt) {
+        writeInt(RETURN);
+        writeToken(stmt.keyword);
+        writeExpr(stmt.value);
+        return null;
+    }
+
+    @Override
+    public Void visitVarStmt(Stmt.Var stmt) {
+        writeInt(VAR);
+        writeToken(stmt.name);
+        writeExpr(stmt.initializer);
+        writeBinding(stmt.binding);
+        return null;
+    }
+
+    @Override
+    public Void visitPrintStmt(Stmt.Print stmt) {
+        writeInt(PRINT);
+        writeExpr(stmt.expression);
+        return null;
+    }
+
+    @Override
+    public Void visitWhileStmt(Stmt.While stmt) {
+        writeInt(WHILE);
+        writeToken(stmt.keyword);
+        writeExpr(stmt.condition);
+        writeStmt(stmt.body);
+        return null;
+    }
+
+    @Override
+    public Void visitImportStmt(Stmt.Import stmt) {
+        writeInt(IMPORT);
+        writeToken(stmt.keyword);
+        writeToken(stmt.path);
+        return null;
+    }
+}
@@ -0,0 +1,61 @@
+// Where the Resolver found a variable: a slot in the current call frame, an
+// upvalue captured by the enclosing closure, or a global.
+public class Binding {
+    enum Kind {
+        GLOBAL,
+        LOCAL,
+        UPVALUE,
+    }
+
+    final Kind kind;
+    final int index;
+    // Set on a LOCAL when some closure captures it, in which case its slot holds a Cell.
+    boolean captured = false;
+
+    // Globals are late bound: the slot is looked up by name on first use and cached here,
+    // along with the slot table it is valid for. One object, so threads see both or neither.
+    final String name;
+    private GlobalSlot globalSlot;
+
+    private static final class GlobalSlot {
+        final Environment.Slots slots;
+        final int slot;
+
+        GlobalSlot(Environment.Slots slots, int slot) {
+            this.slots = slots;
+            this.slot = slot;
+        }
+    }
+
+    Binding(Kind kind, int index) {
+        this.kind = kind;
+        this.index = index;
+        this.name = null;
+    }
+
+    private Binding(String name) {
+        this.kind = Kind.GLOBAL;
+        this.index = -1;
+        this.name = name;
+    }
+
+    static Binding global(String name) {
+        return new Binding(name);
+    }
+
+    int globalSlot(Environment globals) {
+        GlobalSlot cached = globalSlot;
+        Environment.Slots slots = globals.slots();
+        if (cached != null && cached.slots == slots) return cached.slot;
+
+        int slot = slots.slotFor(name);
+        globalSlot = new GlobalSlot(slots, slot);
+        return slot;
+    }
+
+    // Returns true if the variable is captured and got a Cell.
+    boolean initialize(Object[] frame, Object value) {
+        frame[index] = captured ? new Cell(value) : value;
+        return captured;
+    }
+}
@@ -0,0 +1,8 @@
+// A variable shared between the frame that declared it and the closures that captured it.
+public class Cell {
+    Object value;
+
+    Cell(Object value) {
+        this.value = value;
+    }
+}
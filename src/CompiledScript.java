@@ -0,0 +1,93 @@
+import java.lang.ref.SoftReference;
+import java.util.Collections;
+import java.util.List;
+
+// A scanned, parsed and resolved program. The Resolver writes its results onto the
+// AST once, so afterwards the script is immutable and can be run any number of times,
+// from any number of threads, each run against the globals of its own LoxRuntime.
+//
+// A compact script keeps its AST packed in an AstArena instead, which suits caches that
+// hold many scripts but run each of them rarely. The tree is rebuilt on the first run and
+// kept for later runs, along with the slots its Bindings cache, for as long as memory
+// allows; the collector may take it back, and it is rebuilt when needed again.
+public final class CompiledScript {
+    private final List<Stmt> statements;
+    private final AstArena arena;
+    private volatile SoftReference<List<Stmt>> lowered;
+    private final int frameSize;
+
+    CompiledScript(List<Stmt> statements, int frameSize) {
+        this.statements = Collections.unmodifiableList(statements);
+        this.arena = null;
+        this.frameSize = frameSize;
+    }
+
+    private CompiledScript(AstArena arena, int frameSize) {
+        this.statements = null;
+        this.arena = arena;
+        this.frameSize = frameSize;
+    }
+
+    // Returns null if the source has static errors, which are sent to the reporter.
+    static CompiledScript compile(String source, ErrorReporter reporter) {
+        return compile(source, reporter, false);
+    }
+
+    // With lazyFunctions, top level function bodies are only checked for matching braces
+    // here, and their static errors show up when they are first called.
+    static CompiledScript compile(String source, ErrorReporter reporter, boolean lazyFunctions) {
+        LoxEvents.Compile event = new LoxEvents.Compile();
+        event.begin();
+        // The reporter may be a runtime's, with errors from earlier compiles on it
+        int errors = reporter.errorCount();
+        try {
+            long start = System.nanoTime();
+            Scanner scanner = new Scanner(source, reporter);
+            List<Token> tokens = scanner.scanTokens();
+            event.tokens = tokens.size();
+            long scanned = System.nanoTime();
+            event.scanTime = scanned - start;
+
+            List<Stmt> statements = ParallelParser.parse(tokens, reporter, lazyFunctions);
+            long parsed = System.nanoTime();
+            event.parseTime = parsed - scanned;
+            if (reporter.errorCount() != errors) return null;
+
+            Resolver resolver = new Resolver(reporter);
+            resolver.resolve(statements);
+            event.resolveTime = System.nanoTime() - parsed;
+            event.nodes = resolver.nodeCount();
+            if (reporter.errorCount() != errors) return null;
+
+            event.succeeded = true;
+            return new CompiledScript(statements, resolver.frameSize());
+        } finally {
+            event.commit();
+        }
+    }
+
+    // The same script, with its AST packed into an arena.
+    CompiledScript compact() {
+        if (arena != null) return this;
+        return new CompiledScript(AstArena.of(statements), frameSize);
+    }
+
+    List<Stmt> statements() {
+        if (arena == null) return statements;
+
+        List<Stmt> tree = lowered != null ? lowered.get() : null;
+        if (tree != null) return tree;
+        synchronized (this) {
+            tree = lowered != null ? lowered.get() : null;
+            if (tree == null) {
+                tree = Collections.unmodifiableList(arena.lower());
+                lowered = new SoftReference<>(tree);
+            }
+            return tree;
+        }
+    }
+
+    int frameSize() {
+        return frameSize;
+    }
+}
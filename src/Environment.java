@@ -1,60 +1,165 @@
+import java.util.Arrays;
 import java.util.HashMap;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
 
+// Holds the globals. Locals live in call frames laid out by the Resolver.
 public class Environment {
-    final Environment enclosing;
-    private final Map<String, Object> values = new HashMap<>();
+    // Which slot each global name has. A table only ever grows, so a Binding can cache its
+    // slot along with the table it came from for as long as the table lives. Every runtime
+    // has a table of its own, so one runtime's names never grow another's, except that the
+    // runtimes of a pool share one, as they run the same scripts.
+    static final class Slots {
+        private final Map<String, Integer> slots;
+        private final AtomicInteger count;
 
-    public Environment() {
-        this.enclosing = null;
+        Slots() {
+            this.slots = new ConcurrentHashMap<>();
+            this.count = new AtomicInteger();
+        }
+
+        Slots(Slots source) {
+            this.slots = new ConcurrentHashMap<>(source.slots);
+            this.count = new AtomicInteger(source.count.get());
+        }
+
+        int slotFor(String name) {
+            return slots.computeIfAbsent(name, key -> count.getAndIncrement());
+        }
+
+        // Like slotFor, but -1 for a name that has no slot yet, rather than giving it one.
+        int existingSlot(String name) {
+            Integer slot = slots.get(name);
+            return slot == null ? -1 : slot;
+        }
+
+        int size() {
+            return count.get();
+        }
+    }
+
+    private final Slots slots;
+
+    // Tasks share the globals, so definitions are synchronized and the table is volatile.
+    // Reading or assigning an existing global is a plain cell access.
+    private volatile Cell[] cells = new Cell[16];
+
+    Environment() {
+        this(new Slots());
+    }
+
+    Environment(Slots slots) {
+        this.slots = slots;
     }
 
-    public Environment(Environment enclosing) {
-        this.enclosing = enclosing;
+    Slots slots() {
+        return slots;
+    }
+
+    int slotFor(String name) {
+        return slots.slotFor(name);
     }
 
     void define(String name, Object value) {
-        values.put(name, value);
+        define(slotFor(name), value);
     }
 
-    Object get(Token name) throws RuntimeError {
-        if (values.containsKey(name.lexeme)) {
-            return values.get(name.lexeme);
+    // Returns true if the variable is new and got a Cell.
+    synchronized boolean define(int slot, Object value) {
+        Cell[] cells = this.cells;
+        if (slot >= cells.length) {
+            cells = Arrays.copyOf(cells, Math.max(slot + 1, cells.length * 2));
+            this.cells = cells;
+        }
+
+        Cell cell = cells[slot];
+        if (cell == null) {
+            cells[slot] = new Cell(value);
+            // Written again so the volatile write publishes the new Cell, value included,
+            // to tasks reading the table
+            this.cells = cells;
+            return true;
         }
+        cell.value = value;
+        return false;
+    }
+
+    Object get(int slot, Token name) throws RuntimeError {
+        return cell(slot, name).value;
+    }
 
-        if (enclosing != null) return enclosing.get(name);
+    void assign(int slot, Token name, Object value) throws RuntimeError {
+        cell(slot, name).value = value;
+    }
 
-        throw new RuntimeError(name, "Undefined variable '" + name.lexeme + "'.");
+    // A snapshot of the globals, with a table of its own that numbers names as this one
+    // does now.
+    synchronized Environment copy() {
+        Environment copy = new Environment(new Slots(slots));
+        copy.resetTo(this);
+        return copy;
     }
 
-    public void assign(Token name, Object value) throws RuntimeError {
-        if (values.containsKey(name.lexeme)) {
-            values.put(name.lexeme, value);
-            return;
+    // Replaces every global with the ones in baseline, which must be a copy() of this
+    // environment, so its slots mean the same here. Names defined since keep their slots,
+    // and the Bindings that cached them stay valid, but are undefined again.
+    synchronized void resetTo(Environment baseline) {
+        Cell[] source = baseline.cells;
+        Cell[] cells = this.cells;
+        if (cells.length < source.length) {
+            cells = new Cell[source.length];
+        } else {
+            Arrays.fill(cells, null);
         }
 
-        if (enclosing != null) {
-            enclosing.assign(name, value);
-            return;
+        for (int i = 0; i < source.length; i++) {
+            Cell cell = source[i];
+            if (cell != null) cells[i] = new Cell(cell.value);
         }
+        this.cells = cells;
+    }
 
-        throw new RuntimeError(name, "Undefined variable '" + name.lexeme + "'.");
+    // Host lookups by name don't give the name a slot, so reading a name that was never
+    // defined costs nothing afterwards.
+    boolean isDefined(String name) {
+        int slot = slots.existingSlot(name);
+        Cell[] cells = this.cells;
+        return slot >= 0 && slot < cells.length && cells[slot] != null;
     }
 
-    public Object getAt(Integer distance, String name) {
-        return ancestor(distance).values.get(name);
+    // Host access by name. Returns null both for nil and for undefined names.
+    Object lookUp(String name) {
+        int slot = slots.existingSlot(name);
+        Cell[] cells = this.cells;
+        Cell cell = slot >= 0 && slot < cells.length ? cells[slot] : null;
+        return cell == null ? null : cell.value;
     }
 
-    private Environment ancestor(Integer distance) {
-        Environment environment = this;
-        for (int i = 0; i < distance; i++) {
-            environment = environment.enclosing;
-        }
+    synchronized void undefine(String name) {
+        int slot = slots.existingSlot(name);
+        if (slot >= 0 && slot < cells.length) cells[slot] = null;
+    }
 
-        return environment;
+    Map<String, Object> values() {
+        Map<String, Object> values = new HashMap<>();
+        Cell[] cells = this.cells;
+        for (Map.Entry<String, Integer> entry : slots.slots.entrySet()) {
+            int slot = entry.getValue();
+            if (slot < cells.length && cells[slot] != null) {
+                values.put(entry.getKey(), cells[slot].value);
+            }
+        }
+        return values;
     }
 
-    public void assignAt(Integer distance, Token name, Object value) {
-        ancestor(distance).values.put(name.lexeme, value);
+    private Cell cell(int slot, Token name) throws RuntimeError {
+        Cell[] cells = this.cells;
+        Cell cell = slot < cells.length ? cells[slot] : null;
+        if (cell == null) {
+            throw new RuntimeError(name, "Undefined variable '" + name.lexeme + "'.");
+        }
+
+        return cell;
     }
 }
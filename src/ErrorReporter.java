@@ -0,0 +1,60 @@
+import java.io.PrintWriter;
+
+// Collects the static and runtime errors of one LoxRuntime. Tasks and actors report from
+// threads of their own, so everything is synchronized.
+public class ErrorReporter {
+    private PrintWriter err;
+    private int errorCount = 0;
+    private boolean hadRuntimeError = false;
+
+    public ErrorReporter(PrintWriter err) {
+        this.err = err;
+    }
+
+    synchronized void error(int line, String message) {
+        report(line, "", message);
+    }
+
+    synchronized void error(Token token, String message) {
+        if (token.type == TokenType.EOF) {
+            report(token.line, " at end", message);
+        } else {
+            report(token.line, " at '" + token.lexeme + "'", message);
+        }
+    }
+
+    private void report(int line, String where, String message) {
+        err.println("[line " + line + "] Error" + where + ": " + message);
+        errorCount++;
+    }
+
+    synchronized void runtimeError(RuntimeError error) {
+        if (error.token == null) {
+            err.println(error.getMessage());
+        } else {
+            err.println(error.getMessage() + "\n[line " + error.token.line + "]");
+        }
+        hadRuntimeError = true;
+    }
+
+    synchronized void redirect(PrintWriter err) {
+        this.err = err;
+    }
+
+    public synchronized boolean hadError() {
+        return errorCount > 0;
+    }
+
+    synchronized int errorCount() {
+        return errorCount;
+    }
+
+    public synchronized boolean hadRuntimeError() {
+        return hadRuntimeError;
+    }
+
+    public synchronized void reset() {
+        errorCount = 0;
+        hadRuntimeError = false;
+    }
+}
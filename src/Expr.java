@@ -1,6 +1,6 @@
 import java.util.List;
 
-abstract class Expr {
+abstract sealed class Expr permits Expr.Assign, Expr.Binary, Expr.Call, Expr.Get, Expr.Set, Expr.Super, Expr.This, Expr.Grouping, Expr.Literal, Expr.Logical, Expr.Variable, Expr.Unary, Expr.ArrayLiteral, Expr.Index, Expr.IndexSet {
     interface Visitor<R> {
          R visitAssignExpr(Assign expr) throws RuntimeError;
          R visitBinaryExpr(Binary expr) throws RuntimeError;
@@ -14,9 +14,35 @@ abstract class Expr {
          R visitLogicalExpr(Logical expr) throws RuntimeError;
          R visitVariableExpr(Variable expr) throws RuntimeError;
          R visitUnaryExpr(Unary expr) throws RuntimeError;
+         R visitArrayLiteralExpr(ArrayLiteral expr) throws RuntimeError;
+         R visitIndexExpr(Index expr) throws RuntimeError;
+         R visitIndexSetExpr(IndexSet expr) throws RuntimeError;
      }
-    static class Assign extends Expr {
+
+    static final int ASSIGN = 0;
+    static final int BINARY = 1;
+    static final int CALL = 2;
+    static final int GET = 3;
+    static final int SET = 4;
+    static final int SUPER = 5;
+    static final int THIS = 6;
+    static final int GROUPING = 7;
+    static final int LITERAL = 8;
+    static final int LOGICAL = 9;
+    static final int VARIABLE = 10;
+    static final int UNARY = 11;
+    static final int ARRAY_LITERAL = 12;
+    static final int INDEX = 13;
+    static final int INDEX_SET = 14;
+
+    final int kind;
+
+    Expr(int kind) {
+        this.kind = kind;
+    }
+    static final class Assign extends Expr {
          Assign(Token name, Expr value) {
+            super(ASSIGN);
             this.name = name;
             this.value = value;
         }
@@ -28,9 +54,12 @@ abstract class Expr {
 
         final Token name;
         final Expr value;
+
+        Binding binding;
     }
-    static class Binary extends Expr {
+    static final class Binary extends Expr {
          Binary(Expr left, Token operator, Expr right) {
+            super(BINARY);
             this.left = left;
             this.operator = operator;
             this.right = right;
@@ -45,8 +74,9 @@ abstract class Expr {
         final Token operator;
         final Expr right;
     }
-    static class Call extends Expr {
+    static final class Call extends Expr {
          Call(Expr callee, Token paren, List<Expr> arguments) {
+            super(CALL);
             this.callee = callee;
             this.paren = paren;
             this.arguments = arguments;
@@ -61,8 +91,9 @@ abstract class Expr {
         final Token paren;
         final List<Expr> arguments;
     }
-    static class Get extends Expr {
+    static final class Get extends Expr {
          Get(Expr object, Token name) {
+            super(GET);
             this.object = object;
             this.name = name;
         }
@@ -75,8 +106,9 @@ abstract class Expr {
         final Expr object;
         final Token name;
     }
-    static class Set extends Expr {
+    static final class Set extends Expr {
          Set(Expr object, Token name, Expr value) {
+            super(SET);
             this.object = object;
             this.name = name;
             this.value = value;
@@ -91,8 +123,9 @@ abstract class Expr {
         final Token name;
         final Expr value;
     }
-    static class Super extends Expr {
+    static final class Super extends Expr {
          Super(Token keyword, Token method) {
+            super(SUPER);
             this.keyword = keyword;
             this.method = method;
         }
@@ -104,9 +137,13 @@ abstract class Expr {
 
         final Token keyword;
         final Token method;
+
+        Binding binding;
+        Binding thisBinding;
     }
-    static class This extends Expr {
+    static final class This extends Expr {
          This(Token keyword) {
+            super(THIS);
             this.keyword = keyword;
         }
 
@@ -116,9 +153,12 @@ abstract class Expr {
         }
 
         final Token keyword;
+
+        Binding binding;
     }
-    static class Grouping extends Expr {
+    static final class Grouping extends Expr {
          Grouping(Expr expression) {
+            super(GROUPING);
             this.expression = expression;
         }
 
@@ -129,8 +169,9 @@ abstract class Expr {
 
         final Expr expression;
     }
-    static class Literal extends Expr {
+    static final class Literal extends Expr {
          Literal(Object value) {
+            super(LITERAL);
             this.value = value;
         }
 
@@ -141,8 +182,9 @@ abstract class Expr {
 
         final Object value;
     }
-    static class Logical extends Expr {
+    static final class Logical extends Expr {
          Logical(Expr left, Token operator, Expr right) {
+            super(LOGICAL);
             this.left = left;
             this.operator = operator;
             this.right = right;
@@ -157,8 +199,9 @@ abstract class Expr {
         final Token operator;
         final Expr right;
     }
-    static class Variable extends Expr {
+    static final class Variable extends Expr {
          Variable(Token name) {
+            super(VARIABLE);
             this.name = name;
         }
 
@@ -168,9 +211,12 @@ abstract class Expr {
         }
 
         final Token name;
+
+        Binding binding;
     }
-    static class Unary extends Expr {
+    static final class Unary extends Expr {
          Unary(Token operator, Expr right) {
+            super(UNARY);
             this.operator = operator;
             this.right = right;
         }
@@ -183,6 +229,57 @@ abstract class Expr {
         final Token operator;
         final Expr right;
     }
+    static final class ArrayLiteral extends Expr {
+         ArrayLiteral(Token bracket, List<Expr> elements) {
+            super(ARRAY_LITERAL);
+            this.bracket = bracket;
+            this.elements = elements;
+        }
+
+        @Override
+        <R> R accept(Visitor<R> visitor) throws RuntimeError {
+            return visitor.visitArrayLiteralExpr(this);
+        }
+
+        final Token bracket;
+        final List<Expr> elements;
+    }
+    static final class Index extends Expr {
+         Index(Expr object, Token bracket, Expr index) {
+            super(INDEX);
+            this.object = object;
+            this.bracket = bracket;
+            this.index = index;
+        }
+
+        @Override
+        <R> R accept(Visitor<R> visitor) throws RuntimeError {
+            return visitor.visitIndexExpr(this);
+        }
+
+        final Expr object;
+        final Token bracket;
+        final Expr index;
+    }
+    static final class IndexSet extends Expr {
+         IndexSet(Expr object, Token bracket, Expr index, Expr value) {
+            super(INDEX_SET);
+            this.object = object;
+            this.bracket = bracket;
+            this.index = index;
+            this.value = value;
+        }
+
+        @Override
+        <R> R accept(Visitor<R> visitor) throws RuntimeError {
+            return visitor.visitIndexSetExpr(this);
+        }
+
+        final Expr object;
+        final Token bracket;
+        final Expr index;
+        final Expr value;
+    }
 
   abstract <R> R accept(Visitor<R> visitor) throws RuntimeError;
 }
@@ -0,0 +1,232 @@
+import java.io.PrintWriter;
+import java.io.StringWriter;
+import java.util.ArrayList;
+import java.util.List;
+
+// A source that is kept scanned, parsed and resolved as it is edited, for editors. The
+// text is split into segments, one per top level statement, each with its statements and
+// its errors. An edit rescans from the first segment it touches until the scan reaches a
+// boundary that an old segment starts at, and reuses the old segments from there on, only
+// moving them to their new offsets and lines.
+//
+// Top level statements share no Resolver state, since globals are bound by name and a top
+// level block's slots are free again when it ends, so each segment is resolved on its own.
+// That also means errors in one statement never cascade into the next.
+public class IncrementalDocument {
+    private static class Segment {
+        // Where the segment starts, which is where the previous one ended, and where its last
+        // token ends. Whitespace and comments belong to the segment that follows them.
+        int start;
+        int end;
+        int line;
+        int endLine;
+        // How many lines the segment moved since its statements were built
+        int moved = 0;
+        final List<Stmt> statements;
+        final int frameSize;
+        final String errors;
+        // The statements as they were scanned, packed, and how many lines they have moved
+        // since. Kept once the segment first moves, so moving it again is only a lowering.
+        private AstArena scanned;
+        private int scannedMoved;
+
+        Segment(int start, int end, int line, int endLine, List<Stmt> statements, int frameSize, String errors) {
+            this.start = start;
+            this.end = end;
+            this.line = line;
+            this.endLine = endLine;
+            this.statements = statements;
+            this.frameSize = frameSize;
+            this.errors = errors;
+        }
+
+        void move(int delta, int lineDelta) {
+            start += delta;
+            end += delta;
+            if (lineDelta == 0) return;
+
+            line += lineDelta;
+            endLine += lineDelta;
+            moved += lineDelta;
+        }
+
+        // The segment with its statements on the lines it moved to. Tokens are shared with
+        // the scripts compile() handed out earlier, so the tree is copied through an arena,
+        // lines shifted, rather than changed. That takes no scanning, parsing or resolving.
+        Segment shifted() {
+            AstArena arena = scanned != null ? scanned : AstArena.of(statements);
+            int lineDelta = scannedMoved + moved;
+            Segment segment = new Segment(start, end, line, endLine, arena.lower(lineDelta), frameSize, errors);
+            segment.scanned = arena;
+            segment.scannedMoved = lineDelta;
+            return segment;
+        }
+    }
+
+    private String text;
+    private List<Segment> segments = new ArrayList<>();
+    private int rescanned = 0;
+
+    public IncrementalDocument(String text) {
+        this.text = text;
+        this.segments = rescan(0, 0, 0, 0, 0);
+    }
+
+    public String text() {
+        return text;
+    }
+
+    // Replaces deletedLength characters at offset with inserted.
+    public void edit(int offset, int deletedLength, String inserted) {
+        if (offset < 0 || deletedLength < 0 || offset + deletedLength > text.length()) {
+            throw new IndexOutOfBoundsException("Edit outside of the document.");
+        }
+
+        String deleted = text.substring(offset, offset + deletedLength);
+        text = text.substring(0, offset) + inserted + text.substring(offset + deletedLength);
+
+        int delta = inserted.length() - deletedLength;
+        int lineDelta = newlines(inserted) - newlines(deleted);
+
+        // A segment that ends where the edit starts is rescanned too, as the edit may
+        // continue it, e.g. with an 'else'
+        int first = 0;
+        while (first < segments.size() - 1 && segments.get(first).end < offset) first++;
+
+        segments = rescan(first, offset + deletedLength, offset + inserted.length(), delta, lineDelta);
+    }
+
+    // Rescans from the start of segments[first] until the scan is past changed, the end
+    // of the edit in the new text, and lines up with an old segment that starts at or after
+    // unchanged, the end of the edit in the old text.
+    private List<Segment> rescan(int first, int unchanged, int changed, int delta, int lineDelta) {
+        List<Segment> result = new ArrayList<>(segments.subList(0, first));
+
+        int position = first < segments.size() ? segments.get(first).start : 0;
+        int line = first < segments.size() ? segments.get(first).line : 1;
+        int old = first;
+        rescanned = 0;
+        while (true) {
+            Segment segment = scan(position, line);
+            result.add(segment);
+            rescanned++;
+            position = segment.end;
+            line = segment.endLine;
+            if (position >= text.length()) return result;
+            if (position < changed) continue;
+
+            int oldPosition = position - delta;
+            while (old < segments.size() && segments.get(old).start < oldPosition) old++;
+            if (old < segments.size() && oldPosition >= unchanged && segments.get(old).start == oldPosition
+                    && segments.get(old).line + lineDelta == line) {
+                break;
+            }
+        }
+
+        for (Segment segment : segments.subList(old, segments.size())) {
+            if (lineDelta != 0 && !segment.errors.isEmpty()) {
+                // The messages have the old line numbers in them
+                segment = scan(segment.start + delta, segment.line + lineDelta);
+            } else {
+                segment.move(delta, lineDelta);
+            }
+            result.add(segment);
+        }
+        return result;
+    }
+
+    // Scans, parses and resolves the top level statement at offset: everything up to and
+    // including the first ';' or '}' at bracket depth 0 that isn't followed by 'else'.
+    private Segment scan(int offset, int line) {
+        StringWriter errors = new StringWriter();
+        ErrorReporter reporter = new ErrorReporter(new PrintWriter(errors));
+        Scanner scanner = new Scanner(text, offset, line, reporter);
+
+        List<Token> tokens = new ArrayList<>();
+        int depth = 0;
+        Token token;
+        while ((token = scanner.nextToken()) != null) {
+            tokens.add(token);
+            switch (token.type) {
+                case LEFT_PAREN, LEFT_BRACE, LEFT_BRACKET -> depth++;
+                case RIGHT_PAREN, RIGHT_BRACE, RIGHT_BRACKET -> depth--;
+                default -> {
+                }
+            }
+
+            boolean ends = token.type == TokenType.SEMICOLON || token.type == TokenType.RIGHT_BRACE;
+            if (depth <= 0 && ends && !followedByElse(scanner.offset(), scanner.line())) break;
+        }
+
+        int end = token == null ? text.length() : scanner.offset();
+        int endLine = scanner.line();
+
+        List<Stmt> statements = new ArrayList<>();
+        int frameSize = 0;
+        if (!tokens.isEmpty()) {
+            List<Token> input = new ArrayList<>(tokens);
+            input.add(new Token(TokenType.EOF, "", null, endLine));
+            statements = new Parser(input, reporter).parse();
+            if (!reporter.hadError()) {
+                Resolver resolver = new Resolver(reporter);
+                resolver.resolve(statements);
+                frameSize = resolver.frameSize();
+            }
+        }
+
+        return new Segment(offset, end, line, endLine, statements, frameSize, errors.toString());
+    }
+
+    private boolean followedByElse(int offset, int line) {
+        ErrorReporter ignored = new ErrorReporter(new PrintWriter(new StringWriter()));
+        Token next = new Scanner(text, offset, line, ignored).nextToken();
+        return next != null && next.type == TokenType.ELSE;
+    }
+
+    private static int newlines(String string) {
+        int count = 0;
+        for (int i = 0; i < string.length(); i++) {
+            if (string.charAt(i) == '\n') count++;
+        }
+        return count;
+    }
+
+    // The static errors, in source order, as the CLI would print them.
+    public String errors() {
+        StringBuilder errors = new StringBuilder();
+        for (Segment segment : segments) {
+            errors.append(segment.errors);
+        }
+        return errors.toString();
+    }
+
+    public boolean hasErrors() {
+        for (Segment segment : segments) {
+            if (!segment.errors.isEmpty()) return true;
+        }
+        return false;
+    }
+
+    // The document as it stands, or null if it has errors.
+    public CompiledScript compile() {
+        if (hasErrors()) return null;
+
+        List<Stmt> statements = new ArrayList<>();
+        int frameSize = 0;
+        for (int i = 0; i < segments.size(); i++) {
+            Segment segment = segments.get(i);
+            if (segment.moved != 0) {
+                segment = segment.shifted();
+                segments.set(i, segment);
+            }
+            statements.addAll(segment.statements);
+            frameSize = Math.max(frameSize, segment.frameSize);
+        }
+        return new CompiledScript(statements, frameSize);
+    }
+
+    // How many top level statements the last edit scanned again.
+    public int rescannedStatements() {
+        return rescanned;
+    }
+}
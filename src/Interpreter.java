@@ -1,45 +1,282 @@
+import java.io.IOException;
+import java.nio.file.InvalidPathException;
+import java.nio.file.Path;
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
 
 public class Interpreter implements Expr.Visitor<Object>, Stmt.Visitor<Void> {
-    final Environment globals = new Environment();
-    private Environment environment = globals;
-    private final Map<Expr, Integer> locals = new HashMap<>();
-
-    Interpreter() {
-        globals.define("clock", new LoxCallable() {
-            @Override
-            public Object call(Interpreter interpreter, List<Object> arguments) {
-                return (double)System.currentTimeMillis() / 1000.0;
-            }
+    // The globals of the module that is running, which are the runtime's own outside of imports
+    Environment globals;
+    // Module instances by path, each run at most once per runtime
+    final Map<Path, LoxModule.Instance> modules;
+    // Where imports are looked up, or the working directory if null
+    Path directory;
+    // Where compiled scripts are kept between processes, or null for nowhere
+    Path compileCache;
+    private static final Cell[] NO_UPVALUES = new Cell[0];
+    // -Dlox.dispatch=switch runs scripts on a SwitchInterpreter instead
+    private static final boolean SWITCH_DISPATCH = "switch".equals(System.getProperty("lox.dispatch"));
+    private Object[] frame = new Object[0];
+    private Cell[] upvalues = NO_UPVALUES;
+    private final ErrorReporter reporter;
+    private LoxOutput out;
+
+    // The steps and time one run may take, shared by the interpreters of its tasks, actors
+    // and parallel loops.
+    static final class Limits {
+        private final long steps;
+        private final AtomicLong stepsLeft;
+        // In System.nanoTime() terms, or 0 for none
+        private final long deadline;
+        // Set when the run went over a limit, so tasks it left running stop too
+        private volatile boolean stopped = false;
+
+        // Zero means no limit.
+        Limits(long steps, long nanos) {
+            this.steps = steps > 0 ? steps : Long.MAX_VALUE;
+            this.stepsLeft = new AtomicLong(this.steps);
+            this.deadline = nanos > 0 ? Math.max(1, System.nanoTime() + nanos) : 0;
+        }
 
-            @Override
-            public int arity() {
-                return 0;
+        // Takes up to CHECK_INTERVAL of the steps the run has left, fewer as they run low
+        // so that one interpreter can't sit on what another could use. Zero if none are left.
+        private int take() {
+            if (steps == Long.MAX_VALUE) return CHECK_INTERVAL;
+            while (true) {
+                long left = stepsLeft.get();
+                if (left == 0) return 0;
+                int granted = (int) Math.min(CHECK_INTERVAL, Math.max(1, left / 8));
+                if (stepsLeft.compareAndSet(left, left - granted)) return granted;
             }
+        }
+
+        void stop() {
+            stopped = true;
+        }
+
+        // Nanoseconds until the deadline, Long.MAX_VALUE if there is none.
+        long nanosLeft() {
+            return deadline == 0 ? Long.MAX_VALUE : deadline - System.nanoTime();
+        }
+
+        // For natives that block, which wait no longer than this.
+        void checkTime() {
+            if (nanosLeft() <= 0) throw new LimitExceeded("Exceeded the time limit.", null);
+        }
+    }
+
+    // Limits on a run. A step is a loop iteration or a call; steps are counted down in
+    // budget, so charging one costs a decrement, and only when a budget of at most
+    // CHECK_INTERVAL steps runs out does checkLimits() take more from the run's limits and
+    // look at the clock.
+    private static final int CHECK_INTERVAL = 1 << 12;
+    private Limits limits = new Limits(0, 0);
+    private int budget = 0;
+    private int callDepthLimit = Integer.MAX_VALUE;
+    private int callDepth = 0;
+    // What the run has allocated, or null if nobody asked
+    AllocationBudget allocations;
+    // What files scripts may use, or null if none
+    LoxFiles.Access files;
+    // The profiler of the run and this interpreter's stack in it, if it is being profiled
+    LoxProfiler profiler;
+    LoxProfiler.Stack stack;
+
+    Interpreter(ErrorReporter reporter, LoxOutput out, Environment globals, Map<Path, LoxModule.Instance> modules) {
+        this.reporter = reporter;
+        this.out = out;
+        this.globals = globals;
+        this.modules = modules;
+    }
+
+    static Interpreter create(ErrorReporter reporter, LoxOutput out, Environment globals) {
+        return create(reporter, out, globals, new HashMap<>());
+    }
+
+    private static Interpreter create(ErrorReporter reporter, LoxOutput out, Environment globals,
+                                      Map<Path, LoxModule.Instance> modules) {
+        if (SWITCH_DISPATCH) return new SwitchInterpreter(reporter, out, globals, modules);
+        return new Interpreter(reporter, out, globals, modules);
+    }
+
+    // A second interpreter over the same globals, for running code on another thread. It
+    // counts towards the same limits, and its calls count from the depth this one is at, so
+    // recursing through tasks or callbacks can't get around the call depth limit.
+    Interpreter fork() {
+        Interpreter fork = create(reporter, out, globals, modules);
+        fork.limits = limits;
+        fork.callDepthLimit = callDepthLimit;
+        fork.callDepth = callDepth;
+        fork.allocations = allocations;
+        fork.files = files;
+        fork.compileCache = compileCache;
+        if (profiler != null) {
+            fork.profiler = profiler;
+            fork.stack = profiler.newStack();
+        }
+        return fork;
+    }
+
+    Limits limits() {
+        return limits;
+    }
+
+    int callDepth() {
+        return callDepth;
+    }
+
+    // Counts towards limits from callDepth on, for an actor's worker taking on the run that
+    // sent it a message.
+    void adopt(Limits limits, int callDepth) {
+        this.limits = limits;
+        this.callDepth = callDepth;
+        budget = 0;
+    }
+
+    // Starts counting towards the limits again. Zero means no limit.
+    Limits limit(long steps, int callDepth, long nanos) {
+        limits = new Limits(steps, nanos);
+        budget = 0;
+        callDepthLimit = callDepth > 0 ? callDepth : Integer.MAX_VALUE;
+        this.callDepth = 0;
+        return limits;
+    }
+
+    // For natives, which pass a null token.
+    void allocate(Token at, long bytes) throws RuntimeError {
+        if (allocations != null) allocations.allocate(at, bytes);
+    }
+
+    // A call natives make back into Lox code, which counts as a step and towards the call
+    // depth like a call in the script.
+    Object callBack(LoxCallable function, List<Object> arguments) throws RuntimeError {
+        step(null);
+        if (++callDepth > callDepthLimit) {
+            callDepth--;
+            throw new LimitExceeded("Exceeded the call depth limit of " + callDepthLimit + ".", null);
+        }
+        try {
+            return function.call(this, arguments);
+        } finally {
+            callDepth--;
+        }
+    }
+
+    private void step(Token at) {
+        if (--budget < 0) checkLimits(at);
+    }
+
+    private void checkLimits(Token at) {
+        if (limits.stopped) throw new LimitExceeded("Stopped, as the run went over a limit.", at);
+        if (limits.deadline != 0 && System.nanoTime() - limits.deadline > 0) {
+            throw new LimitExceeded("Exceeded the time limit.", at);
+        }
+
+        int granted = limits.take();
+        if (granted == 0) throw new LimitExceeded("Exceeded the limit of " + limits.steps + " steps.", at);
+        // This step is the first of the new budget
+        budget = granted - 1;
+    }
+
+    // Compiles a lazily parsed function. Output is flushed first, as for runtime errors,
+    // so any static errors in its body show up after what the script printed before.
+    void compileLazy(Stmt.Function function) throws RuntimeError {
+        if (function.lazy.compiled()) return;
+
+        out.flush();
+        function.lazy.compile(function, reporter);
+    }
+
+    void reportRuntimeError(RuntimeError error) {
+        LoxEvents.RuntimeFailure event = new LoxEvents.RuntimeFailure();
+        if (event.isEnabled()) {
+            event.message = error.getMessage();
+            event.line = error.token == null ? -1 : error.token.line;
+            event.commit();
+        }
+
+        // Flushed first so the error shows up after the output that preceded it
+        out.flush();
+        reporter.runtimeError(error);
+    }
+
+    void flushOutput() {
+        out.flush();
+    }
+
+    void redirect(LoxOutput out) {
+        this.out = out;
+    }
+
+    static Environment newGlobals() {
+        return newGlobals(new Environment.Slots());
+    }
+
+    static Environment newGlobals(Environment.Slots slots) {
+        Environment globals = new Environment(slots);
+        NativeFunction.define(globals, "clock", 0, (interpreter, arguments) ->
+                (double)System.currentTimeMillis() / 1000.0);
+        LoxTask.defineNatives(globals);
+        LoxChannel.defineNatives(globals);
+        LoxArray.defineNatives(globals);
+        LoxMap.defineNatives(globals);
+        NumericKernels.defineNatives(globals);
+        LoxFiles.defineNatives(globals);
+        NativeFunction.define(globals, "flush", 0, (interpreter, arguments) -> {
+            interpreter.out.flush();
+            return null;
         });
+        LoxParallel.defineNatives(globals);
+        return globals;
     }
 
-    void interpret(List<Stmt> statements) {
+    // Returns the value of the last statement if it is an expression statement, for hosts
+    // that evaluate scripts for a result, and null otherwise or after a runtime error.
+    Object interpret(List<Stmt> statements, int frameSize) {
+        LoxEvents.Run event = new LoxEvents.Run();
+        event.begin();
         try {
-            for(Stmt statement: statements) {
-                execute(statement);
-            }
+            Object value = executeScript(statements, new Object[frameSize]);
+            event.succeeded = true;
+            return value;
         } catch (RuntimeError error) {
-            Lox.runtimeError(error);
+            reportRuntimeError(error);
+            return null;
+        } finally {
+            event.commit();
+        }
+    }
+
+    private Object executeScript(List<Stmt> statements, Object[] frame) throws RuntimeError {
+        int last = statements.size() - 1;
+        if (last < 0 || !(statements.get(last) instanceof Stmt.Expression result)) {
+            executeBody(statements, globals, frame, NO_UPVALUES);
+            return null;
+        }
+
+        executeBody(statements.subList(0, last), globals, frame, NO_UPVALUES);
+        Object[] previousFrame = this.frame;
+        try {
+            this.frame = frame;
+            return evaluate(result.expression);
+        } finally {
+            this.frame = previousFrame;
         }
     }
 
-    private void execute(Stmt statement) throws RuntimeError {
+    void execute(Stmt statement) throws RuntimeError {
         statement.accept(this);
     }
 
-    private String stringify(Object value) {
+    static String stringify(Object value) {
         if (value == null) return "nil";
 
-        if (value instanceof Double) {
+        if (value instanceof Double number) {
+            if (isPlainInteger(number)) return Long.toString((long) (double) number);
+
             String text = value.toString();
             if (text.endsWith(".0")) {
                 text = text.substring(0, text.length() - 2);
@@ -50,17 +287,18 @@ public class Interpreter implements Expr.Visitor<Object>, Stmt.Visitor<Void> {
         return value.toString();
     }
 
+    // True for the integers that Double.toString writes without an exponent, so that they
+    // can be formatted as a long instead, which is cheaper than trimming the ".0".
+    static boolean isPlainInteger(double number) {
+        if (number != (long) number || Math.abs(number) >= 1e7) return false;
+        // -0.0 prints as "-0"
+        return number != 0 || 1 / number > 0;
+    }
+
     @Override
     public Object visitAssignExpr(Expr.Assign expr) throws RuntimeError {
         Object value = evaluate(expr.value);
-
-        Integer distance = locals.get(expr);
-        if (distance != null) {
-            environment.assignAt(distance, expr.name, value);
-        } else {
-            globals.assign(expr.name, value);
-        }
-
+        assign(expr.binding, expr.name, value);
         return value;
     }
 
@@ -114,7 +352,9 @@ public class Interpreter implements Expr.Visitor<Object>, Stmt.Visitor<Void> {
                     return (double)left + (double)right;
                 }
                 if (left instanceof String || right instanceof String) {
-                    return stringify(left) + stringify(right);
+                    String result = stringify(left) + stringify(right);
+                    if (allocations != null) allocations.allocate(expr.operator, AllocationBudget.string(result.length()));
+                    return result;
                 }
                 throw new RuntimeError(expr.operator, "Operators must be two numbers or one string");
 
@@ -139,18 +379,42 @@ public class Interpreter implements Expr.Visitor<Object>, Stmt.Visitor<Void> {
             throw new RuntimeError(expr.paren, "Can only call functions and classes.");
         }
 
-        if (arguments.size() != function.arity()) {
+        if (function.arity() != LoxCallable.VARIADIC && arguments.size() != function.arity()) {
             throw new RuntimeError(expr.paren, "Expected " + function.arity() + " arguments but got " + arguments.size() + ".");
         }
 
-        return function.call(this, arguments);
+        step(expr.paren);
+        if (++callDepth > callDepthLimit) {
+            callDepth--;
+            throw new LimitExceeded("Exceeded the call depth limit of " + callDepthLimit + ".", expr.paren);
+        }
+        LoxProfiler.Stack stack = this.stack;
+        if (stack != null) stack.push(function, expr.paren.line);
+        try {
+            return function.call(this, arguments);
+        } catch (RuntimeError error) {
+            // Natives don't know where they were called from
+            if (error.token == null) throw new RuntimeError(expr.paren, error.getMessage());
+            throw error;
+        } catch (LimitExceeded limit) {
+            if (limit.line() < 0) throw limit.at(expr.paren);
+            throw limit;
+        } finally {
+            callDepth--;
+            if (stack != null) stack.pop();
+        }
     }
 
     @Override
     public Object visitGetExpr(Expr.Get expr) throws RuntimeError {
         Object object = evaluate(expr.object);
-        if (object instanceof LoxInstance) {
-            return ((LoxInstance)object).get(expr.name);
+        if (object instanceof LoxInstance instance) {
+            Object value = instance.get(expr.name);
+            // A method read off an instance is bound to it, which makes a new closure
+            if (value instanceof LoxFunction && allocations != null && !instance.hasField(expr.name.lexeme)) {
+                allocations.allocate(expr.name, AllocationBudget.CLOSURE);
+            }
+            return value;
         }
 
         throw new RuntimeError(expr.name, "Only instances have properties.");
@@ -165,29 +429,30 @@ public class Interpreter implements Expr.Visitor<Object>, Stmt.Visitor<Void> {
         }
 
         Object value = evaluate(expr.value);
-        ((LoxInstance)object).set(expr.name, value);
+        boolean added = ((LoxInstance)object).set(expr.name, value);
+        if (added && allocations != null) allocations.allocate(expr.name, AllocationBudget.FIELD);
 
         return value;
     }
 
     @Override
     public Object visitSuperExpr(Expr.Super expr) throws RuntimeError {
-        int distance = locals.get(expr);
-        LoxClass superclass = (LoxClass) environment.getAt(distance, "super");
+        LoxClass superclass = (LoxClass) lookUpVariable(expr.keyword, expr.binding);
 
-        LoxInstance object = (LoxInstance) environment.getAt(distance -1, "this");
+        LoxInstance object = (LoxInstance) lookUpVariable(expr.keyword, expr.thisBinding);
         LoxFunction method = superclass.findMethod(expr.method.lexeme);
 
         if (method == null) {
             throw new RuntimeError(expr.method, "Undefined property '" + expr.method.lexeme + "'.");
         }
 
+        if (allocations != null) allocations.allocate(expr.method, AllocationBudget.CLOSURE);
         return method.bind(object);
     }
 
     @Override
     public Object visitThisExpr(Expr.This expr) throws RuntimeError {
-        return lookUpVariable(expr.keyword, expr);
+        return lookUpVariable(expr.keyword, expr.binding);
     }
 
     private void checkNumberOperands(Token operator, Object left, Object right) throws RuntimeError {
@@ -231,16 +496,61 @@ public class Interpreter implements Expr.Visitor<Object>, Stmt.Visitor<Void> {
 
     @Override
     public Object visitVariableExpr(Expr.Variable expr) throws RuntimeError {
-        return lookUpVariable(expr.name, expr);
+        return lookUpVariable(expr.name, expr.binding);
     }
 
-    private Object lookUpVariable(Token name, Expr expr) throws RuntimeError {
-        Integer distance = locals.get(expr);
-        if (distance != null) {
-            return environment.getAt(distance, name.lexeme);
+    private Object lookUpVariable(Token name, Binding binding) throws RuntimeError {
+        switch (binding.kind) {
+            case LOCAL -> {
+                Object value = frame[binding.index];
+                return binding.captured ? ((Cell) value).value : value;
+            }
+            case UPVALUE -> {
+                return upvalues[binding.index].value;
+            }
+            default -> {
+                return globals.get(binding.globalSlot(globals), name);
+            }
+        }
+    }
+
+    private void define(Binding binding, Token name, Object value) throws RuntimeError {
+        boolean celled;
+        if (binding.kind == Binding.Kind.GLOBAL) {
+            celled = globals.define(binding.globalSlot(globals), value);
         } else {
-            return globals.get(name);
+            celled = binding.initialize(frame, value);
         }
+        if (celled && allocations != null) allocations.allocate(name, AllocationBudget.CELL);
+    }
+
+    private void assign(Binding binding, Token name, Object value) throws RuntimeError {
+        switch (binding.kind) {
+            case LOCAL -> {
+                if (binding.captured) {
+                    ((Cell) frame[binding.index]).value = value;
+                } else {
+                    frame[binding.index] = value;
+                }
+            }
+            case UPVALUE -> upvalues[binding.index].value = value;
+            default -> globals.assign(binding.globalSlot(globals), name, value);
+        }
+    }
+
+    private Cell[] capture(Stmt.Function function) {
+        if (function.captures.length == 0) return NO_UPVALUES;
+
+        Cell[] captured = new Cell[function.captures.length];
+        for (int i = 0; i < captured.length; i++) {
+            Binding binding = function.captures[i];
+            if (binding.kind == Binding.Kind.LOCAL) {
+                captured[i] = (Cell) frame[binding.index];
+            } else {
+                captured[i] = upvalues[binding.index];
+            }
+        }
+        return captured;
     }
 
     @Override
@@ -260,19 +570,71 @@ public class Interpreter implements Expr.Visitor<Object>, Stmt.Visitor<Void> {
         return null;
     }
 
+    @Override
+    public Object visitArrayLiteralExpr(Expr.ArrayLiteral expr) throws RuntimeError {
+        Object[] elements = new Object[expr.elements.size()];
+        for (int i = 0; i < elements.length; i++) {
+            elements[i] = evaluate(expr.elements.get(i));
+        }
+        LoxArray array = LoxArray.of(elements);
+        if (allocations != null) allocations.allocate(expr.bracket, AllocationBudget.array(elements.length, array.elementSize()));
+        return array;
+    }
+
+    @Override
+    public Object visitIndexExpr(Expr.Index expr) throws RuntimeError {
+        Object object = evaluate(expr.object);
+        Object index = evaluate(expr.index);
+
+        if (object instanceof LoxArray array) {
+            return array.get(LoxArray.index(expr.bracket, index, array.length()));
+        }
+        if (object instanceof LoxMap map) {
+            return map.get(LoxMap.key(expr.bracket, index));
+        }
+
+        throw new RuntimeError(expr.bracket, "Only arrays and maps can be indexed.");
+    }
+
+    @Override
+    public Object visitIndexSetExpr(Expr.IndexSet expr) throws RuntimeError {
+        Object object = evaluate(expr.object);
+        Object index = evaluate(expr.index);
+
+        if (object instanceof LoxArray array) {
+            Object value = evaluate(expr.value);
+            if (array.set(LoxArray.index(expr.bracket, index, array.length()), value)) {
+                if (allocations != null) allocations.allocate(expr.bracket, AllocationBudget.array(array.length(), AllocationBudget.REFERENCE));
+            }
+            return value;
+        }
+        if (object instanceof LoxMap map) {
+            Object key = LoxMap.key(expr.bracket, index);
+            Object value = evaluate(expr.value);
+            int size = map.size();
+            map.put(key, value);
+            if (map.size() > size && allocations != null) allocations.allocate(expr.bracket, AllocationBudget.MAP_ENTRY);
+            return value;
+        }
+
+        throw new RuntimeError(expr.bracket, "Only arrays and maps can be indexed.");
+    }
+
     private boolean isTruthy(Object object) {
         if (object == null) return false;
         if (object instanceof  Boolean) return (boolean)object;
         return true;
     }
 
-    private Object evaluate(Expr expr) throws RuntimeError {
+    Object evaluate(Expr expr) throws RuntimeError {
         return expr.accept(this);
     }
 
     @Override
     public Void visitBlockStmt(Stmt.Block stmt) throws RuntimeError {
-        executeBlock(stmt.statements, new Environment(environment));
+        for (Stmt statement : stmt.statements) {
+            execute(statement);
+        }
         return null;
     }
 
@@ -286,26 +648,23 @@ public class Interpreter implements Expr.Visitor<Object>, Stmt.Visitor<Void> {
             }
         }
 
-        environment.define(stmt.name.lexeme, null);
+        define(stmt.binding, stmt.name, null);
 
         if (stmt.superclass != null) {
-            environment = new Environment(environment);
-            environment.define("super", superclass);
+            boolean celled = stmt.superBinding.initialize(frame, superclass);
+            if (celled && allocations != null) allocations.allocate(stmt.superclass.name, AllocationBudget.CELL);
         }
 
         Map<String, LoxFunction> methods = new HashMap<>();
         for (Stmt.Function method: stmt.methods) {
-            LoxFunction function = new LoxFunction(method, environment, method.name.lexeme.equals("init"));
+            LoxFunction function = new LoxFunction(method, globals, capture(method), method.name.lexeme.equals("init"));
+            if (allocations != null) allocations.allocate(method.name, closureSize(method));
             methods.put(method.name.lexeme, function);
         }
 
         LoxClass klass = new LoxClass(stmt.name.lexeme, methods, (LoxClass) superclass);
 
-        if (superclass != null) {
-            environment = environment.enclosing;
-        }
-
-        environment.assign(stmt.name, klass);
+        assign(stmt.binding, stmt.name, klass);
         return null;
     }
 
@@ -319,15 +678,21 @@ public class Interpreter implements Expr.Visitor<Object>, Stmt.Visitor<Void> {
         return null;
     }
 
-    void executeBlock(List<Stmt> statements, Environment environment) throws RuntimeError {
-        Environment previous = this.environment;
+    void executeBody(List<Stmt> statements, Environment globals, Object[] frame, Cell[] upvalues) throws RuntimeError {
+        Environment previousGlobals = this.globals;
+        Object[] previousFrame = this.frame;
+        Cell[] previousUpvalues = this.upvalues;
         try {
-            this.environment = environment;
+            this.globals = globals;
+            this.frame = frame;
+            this.upvalues = upvalues;
             for (Stmt statement : statements) {
                 execute(statement);
             }
         } finally {
-            this.environment = previous;
+            this.globals = previousGlobals;
+            this.frame = previousFrame;
+            this.upvalues = previousUpvalues;
         }
     }
 
@@ -339,11 +704,18 @@ public class Interpreter implements Expr.Visitor<Object>, Stmt.Visitor<Void> {
 
     @Override
     public Void visitFunctionStmt(Stmt.Function stmt) throws RuntimeError {
-        LoxFunction function = new LoxFunction(stmt, environment, false);
-        environment.define(stmt.name.lexeme, function);
+        // Declared before the closure is built so a recursive function can capture itself
+        define(stmt.binding, stmt.name, null);
+        assign(stmt.binding, stmt.name, new LoxFunction(stmt, globals, capture(stmt), false));
+        if (allocations != null) allocations.allocate(stmt.name, closureSize(stmt));
         return null;
     }
 
+    private static long closureSize(Stmt.Function function) {
+        if (function.captures.length == 0) return AllocationBudget.CLOSURE;
+        return AllocationBudget.CLOSURE + AllocationBudget.array(function.captures.length, AllocationBudget.REFERENCE);
+    }
+
     @Override
     public Void visitReturnStmt(Stmt.Return stmt) throws RuntimeError {
         Object value = null;
@@ -359,14 +731,14 @@ public class Interpreter implements Expr.Visitor<Object>, Stmt.Visitor<Void> {
             value = evaluate(stmt.initializer);
         }
 
-        environment.define(stmt.name.lexeme, value);
+        define(stmt.binding, stmt.name, value);
         return null;
     }
 
     @Override
     public Void visitPrintStmt(Stmt.Print stmt) throws RuntimeError {
         Object value = evaluate(stmt.expression);
-        System.out.println(stringify(value));
+        out.println(value);
         return null;
     }
 
@@ -374,11 +746,52 @@ public class Interpreter implements Expr.Visitor<Object>, Stmt.Visitor<Void> {
     public Void visitWhileStmt(Stmt.While stmt) throws RuntimeError {
         while (isTruthy(evaluate(stmt.condition))) {
             execute(stmt.body);
+            step(stmt.keyword);
         }
         return null;
     }
 
-    public void resolve(Expr expr, int depth) {
-        locals.put(expr, depth);
+    @Override
+    public Void visitImportStmt(Stmt.Import stmt) throws RuntimeError {
+        LoxModule.Instance module = instantiate(stmt);
+        // Exports are copied, so a module that is still being imported (a cycle) exports
+        // only what it has defined so far
+        for (String name : module.exports()) {
+            if (module.globals.isDefined(name)) globals.define(name, module.globals.lookUp(name));
+        }
+        return null;
+    }
+
+    private LoxModule.Instance instantiate(Stmt.Import stmt) throws RuntimeError {
+        String name = (String) stmt.path.literal;
+        Path path;
+        try {
+            path = (directory != null ? directory.resolve(name) : Path.of(name)).toAbsolutePath().normalize();
+        } catch (InvalidPathException e) {
+            throw new RuntimeError(stmt.path, "Invalid module path '" + name + "'.");
+        }
+
+        LoxModule.Instance instance = modules.get(path);
+        if (instance != null) return instance;
+
+        LoxModule module;
+        try {
+            module = LoxModule.load(path, reporter, compileCache);
+        } catch (IOException e) {
+            throw new RuntimeError(stmt.path, "Could not read module '" + name + "'.");
+        }
+        if (module == null) throw new RuntimeError(stmt.path, "Could not compile module '" + name + "'.");
+
+        instance = new LoxModule.Instance(module, newGlobals());
+        modules.put(path, instance);
+
+        Path previousDirectory = directory;
+        directory = path.getParent();
+        try {
+            executeBody(module.script.statements(), instance.globals, new Object[module.script.frameSize()], NO_UPVALUES);
+        } finally {
+            directory = previousDirectory;
+        }
+        return instance;
     }
 }
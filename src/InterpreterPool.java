@@ -0,0 +1,103 @@
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.io.Writer;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+// A pool of ready-to-use runtimes for serving many short script runs. Runtimes are
+// created up front, reset on checkin rather than rebuilt, and handed out to one
+// thread at a time. The runtimes share one global slot table, so a script's Bindings
+// keep their cached slots whichever runtime runs it.
+public class InterpreterPool {
+    private final BlockingQueue<LoxRuntime> idle = new LinkedBlockingQueue<>();
+    private final Environment.Slots slots = new Environment.Slots();
+    private final int maxSize;
+    private final AtomicInteger created = new AtomicInteger();
+    private final LongAdder checkouts = new LongAdder();
+    private final LongAdder checkins = new LongAdder();
+    private final LongAdder waits = new LongAdder();
+    private final LongAdder waitNanos = new LongAdder();
+
+    public InterpreterPool(int initialSize, int maxSize) {
+        if (initialSize < 0 || maxSize < 1 || initialSize > maxSize) {
+            throw new IllegalArgumentException("Expected 0 <= initialSize <= maxSize and maxSize >= 1.");
+        }
+
+        this.maxSize = maxSize;
+        for (int i = 0; i < initialSize; i++) {
+            created.incrementAndGet();
+            idle.add(newRuntime());
+        }
+    }
+
+    public LoxRuntime checkout() throws InterruptedException {
+        checkouts.increment();
+        LoxRuntime runtime = idle.poll();
+        if (runtime != null) return runtime;
+
+        int count = created.get();
+        while (count < maxSize) {
+            if (created.compareAndSet(count, count + 1)) return newRuntime();
+            count = created.get();
+        }
+
+        waits.increment();
+        long start = System.nanoTime();
+        try {
+            return idle.take();
+        } finally {
+            waitNanos.add(System.nanoTime() - start);
+        }
+    }
+
+    public void checkin(LoxRuntime runtime) {
+        runtime.reset();
+        // Were the table replaced, every script would look its globals up again
+        assert runtime.globals().slots() == slots : "Reset replaced a pooled runtime's slot table.";
+        checkins.increment();
+        idle.add(runtime);
+    }
+
+    // Runs a script on a pooled runtime. Returns false if it failed with a runtime error.
+    public boolean run(CompiledScript script, Writer out, PrintWriter err) throws InterruptedException {
+        LoxRuntime runtime = checkout();
+        try {
+            runtime.redirect(out, err);
+            runtime.run(script);
+            return !runtime.errors().hadRuntimeError();
+        } finally {
+            checkin(runtime);
+        }
+    }
+
+    private LoxRuntime newRuntime() {
+        return new LoxRuntime(new LoxOutput(new OutputStreamWriter(System.out)), new PrintWriter(System.err, true), slots);
+    }
+
+    public int created() {
+        return created.get();
+    }
+
+    public int idle() {
+        return idle.size();
+    }
+
+    public long checkouts() {
+        return checkouts.sum();
+    }
+
+    public long checkins() {
+        return checkins.sum();
+    }
+
+    // Checkouts that had to wait for another thread to return a runtime
+    public long waits() {
+        return waits.sum();
+    }
+
+    public long waitNanos() {
+        return waitNanos.sum();
+    }
+}
@@ -0,0 +1,44 @@
+import java.util.List;
+
+// The body of a function that the Parser only brace-matched. It is parsed and resolved
+// the first time the function is called, so a function that never runs costs no more
+// than scanning it. Only functions that can't capture locals are parsed lazily: those
+// declared at the top level, and methods of top level classes without a superclass.
+final class LazyBody {
+    // The body without its braces, ending in EOF
+    final List<Token> tokens;
+    final boolean method;
+    private volatile boolean compiled = false;
+    private RuntimeError failure;
+
+    LazyBody(List<Token> tokens, boolean method) {
+        this.tokens = tokens;
+        this.method = method;
+    }
+
+    boolean compiled() {
+        return compiled;
+    }
+
+    // Parses and resolves the body into the function, at most once. Static errors are sent
+    // to the reporter and make every call of the function fail.
+    void compile(Stmt.Function function, ErrorReporter reporter) throws RuntimeError {
+        if (compiled) return;
+
+        synchronized (this) {
+            if (compiled) return;
+            if (failure != null) throw failure;
+
+            int errors = reporter.errorCount();
+            function.body.addAll(new Parser(tokens, reporter).parse());
+            if (reporter.errorCount() == errors) {
+                new Resolver(reporter).resolveLazy(function, method);
+            }
+            if (reporter.errorCount() != errors) {
+                failure = new RuntimeError(function.name, "Function '" + function.name.lexeme + "' has errors.");
+                throw failure;
+            }
+            compiled = true;
+        }
+    }
+}
@@ -0,0 +1,25 @@
+// Thrown when a script goes over one of its runtime's limits on steps, call depth or time.
+// Unlike a RuntimeError it is not reported by the runtime or catchable by the script; it
+// unwinds straight out of LoxRuntime.run to the host. Natives throw it without a token,
+// and the call to the native gives it one.
+public class LimitExceeded extends RuntimeException {
+    private static final long serialVersionUID = 1L;
+
+    private final String reason;
+    private final int line;
+
+    LimitExceeded(String reason, Token token) {
+        super(token == null ? reason : reason + " [line " + token.line + "]");
+        this.reason = reason;
+        this.line = token == null ? -1 : token.line;
+    }
+
+    LimitExceeded at(Token token) {
+        return new LimitExceeded(reason, token);
+    }
+
+    // The line of the loop or call the script was at, or -1 if not known
+    public int line() {
+        return line;
+    }
+}
@@ -1,16 +1,10 @@
 import java.io.BufferedReader;
 import java.io.IOException;
 import java.io.InputStreamReader;
-import java.nio.charset.Charset;
-import java.nio.file.Files;
 import java.nio.file.Paths;
-import java.util.List;
+import java.time.Duration;
 
 public class Lox {
-    private static final Interpreter interpreter = new Interpreter();
-    static boolean hadError = false;
-    private static boolean hadRuntimeError = false;
-
     public static void main(String[] args) throws IOException {
         if (args.length > 1) {
             System.out.println("Usage: jlox [script]");
@@ -23,61 +17,44 @@ public class Lox {
     }
 
     private static void runFile(String path) throws IOException {
-        byte[] bytes = Files.readAllBytes(Paths.get(path));
-        run(new String(bytes, Charset.defaultCharset()));
-        if (hadError) System.exit(65);
-        if (hadRuntimeError) System.exit(70);
+        LoxRuntime runtime = new LoxRuntime(System.out, System.err);
+        runtime.enableFileAccess();
+        // Compiled scripts are cached in the user's cache directory, or in -Dlox.cache=<dir>,
+        // and -Dlox.cache=off turns that off
+        String cache = System.getProperty("lox.cache");
+        if (cache == null) {
+            runtime.setCompileCache(LoxcCache.defaultDirectory());
+        } else if (!cache.equals("off")) {
+            runtime.setCompileCache(Paths.get(cache));
+        }
+        // -Dlox.profile=<file> writes a flame graph profile, sampled every
+        // -Dlox.profile.interval milliseconds
+        String profile = System.getProperty("lox.profile");
+        if (profile != null) {
+            long interval = Long.getLong("lox.profile.interval", 1);
+            if (interval <= 0) {
+                System.err.println("lox.profile.interval must be a positive number of milliseconds.");
+                System.exit(64);
+            }
+            runtime.setProfiling(Paths.get(profile), Duration.ofMillis(interval));
+        }
+        runtime.runFile(Paths.get(path));
+        if (runtime.errors().hadError()) System.exit(65);
+        if (runtime.errors().hadRuntimeError()) System.exit(70);
     }
 
     private static void runPrompt() throws IOException {
         InputStreamReader input = new InputStreamReader(System.in);
         BufferedReader reader = new BufferedReader(input);
+        LoxRuntime runtime = new LoxRuntime(System.out, System.err);
+        runtime.enableFileAccess();
 
         for (; ; ) {
             System.out.print("> ");
             String line = reader.readLine();
             if (line == null) break;
-            run(line);
-            hadError = false;
-        }
-    }
-
-    private static void run(String source) {
-        Scanner scanner = new Scanner(source);
-        List<Token> tokens = scanner.scanTokens();
-
-        Parser parser = new Parser(tokens);
-        List<Stmt> statements = parser.parse();
-        if (hadError) return;
-
-        Resolver resolver = new Resolver(interpreter);
-        resolver.resolve(statements);
-        if (hadError) return;
-
-        interpreter.interpret(statements);
-    }
-
-    static void error(int line, String message) {
-        report(line, "", message);
-    }
-
-    static void error(Token token, String message) {
-        if (token.type == TokenType.EOF) {
-            report(token.line, " at end", message);
-        } else {
-            report(token.line, " at '" + token.lexeme + "'", message);
+            runtime.run(line);
+            runtime.errors().reset();
         }
     }
-
-    private static void report(int line, String where, String message) {
-        System.err.println("[line " + line + "] Error" + where + ": " + message);
-        hadError = true;
-    }
-
-    public static void runtimeError(RuntimeError error) {
-        System.err.println(error.getMessage() + "\n[line " + error.token.line + "]");
-        hadRuntimeError = true;
-    }
 }
-
-
@@ -0,0 +1,73 @@
+import java.util.Collections;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+// Runs a handler on each message sent to it, one message at a time and in order. The
+// mailbox is only drained while it has messages, so an idle actor holds no thread.
+public class LoxActor {
+    // A message, and the limits and call depth of the run that sent it, which handling it
+    // counts towards
+    private static final class Message {
+        final Interpreter.Limits limits;
+        final int callDepth;
+        final Object value;
+
+        Message(Interpreter.Limits limits, int callDepth, Object value) {
+            this.limits = limits;
+            this.callDepth = callDepth;
+            this.value = value;
+        }
+    }
+
+    private final Queue<Message> mailbox = new ConcurrentLinkedQueue<>();
+    private final AtomicBoolean scheduled = new AtomicBoolean();
+    // Forked once, as only one message is handled at a time
+    private final Interpreter worker;
+    private final LoxCallable handler;
+
+    LoxActor(Interpreter interpreter, LoxCallable handler) {
+        this.worker = interpreter.fork();
+        this.handler = handler;
+    }
+
+    void tell(Interpreter sender, Object message) {
+        mailbox.offer(new Message(sender.limits(), sender.callDepth(), message));
+        schedule();
+    }
+
+    private void schedule() {
+        if (scheduled.compareAndSet(false, true)) {
+            LoxTask.executor.execute(this::drain);
+        }
+    }
+
+    private void drain() {
+        try {
+            Message message;
+            while ((message = mailbox.poll()) != null) {
+                worker.adopt(message.limits, message.callDepth);
+                try {
+                    worker.callBack(handler, Collections.singletonList(message.value));
+                } catch (RuntimeError error) {
+                    // Nobody waits on an actor, so its errors are reported where they happen
+                    worker.reportRuntimeError(error);
+                } catch (LimitExceeded e) {
+                    // Only the sender's run went over; the actor goes on with the next message
+                    worker.reportRuntimeError(new RuntimeError(null, e.getMessage()));
+                }
+            }
+            // Messages can arrive after the sender's run has ended and flushed
+            worker.flushOutput();
+        } finally {
+            scheduled.set(false);
+        }
+        // A message that arrived after the last poll but before the flag was cleared
+        if (!mailbox.isEmpty()) schedule();
+    }
+
+    @Override
+    public String toString() {
+        return "<actor>";
+    }
+}
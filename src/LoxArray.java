@@ -0,0 +1,217 @@
+import java.util.Arrays;
+
+// A growable array. While every element is a number they are stored unboxed in a
+// double[]; storing anything else switches the array to an Object[] for good.
+// Arrays aren't synchronized: share them between tasks read-only, or hand them over
+// through a channel.
+public class LoxArray {
+    private static final double[] NO_NUMBERS = new double[0];
+
+    private double[] numbers;
+    private Object[] values;
+    private int size;
+
+    private LoxArray(double[] numbers, Object[] values, int size) {
+        this.numbers = numbers;
+        this.values = values;
+        this.size = size;
+    }
+
+    LoxArray() {
+        this(NO_NUMBERS, null, 0);
+    }
+
+    static LoxArray of(double[] numbers) {
+        return new LoxArray(numbers, null, numbers.length);
+    }
+
+    static LoxArray of(Object[] elements) {
+        for (Object element : elements) {
+            if (!(element instanceof Double)) return new LoxArray(null, elements, elements.length);
+        }
+
+        double[] numbers = new double[elements.length];
+        for (int i = 0; i < numbers.length; i++) {
+            numbers[i] = (double) elements[i];
+        }
+        return new LoxArray(numbers, null, numbers.length);
+    }
+
+    static void defineNatives(Environment globals) {
+        NativeFunction.define(globals, "array", 2, (interpreter, arguments) -> {
+            Object length = arguments.get(0);
+            if (!(length instanceof Double count) || count < 0 || count != Math.floor(count) || count > Integer.MAX_VALUE - 8) {
+                throw new RuntimeError(null, "Array length must be a non-negative integer.");
+            }
+
+            Object fill = arguments.get(1);
+            int size = count.intValue();
+            interpreter.allocate(null, AllocationBudget.array(size, fill instanceof Double ? AllocationBudget.NUMBER : AllocationBudget.REFERENCE));
+            if (fill instanceof Double number) {
+                double[] numbers = new double[size];
+                Arrays.fill(numbers, number);
+                return new LoxArray(numbers, null, size);
+            }
+
+            Object[] values = new Object[size];
+            Arrays.fill(values, fill);
+            return new LoxArray(null, values, size);
+        });
+        NativeFunction.define(globals, "length", 1, (interpreter, arguments) -> {
+            Object value = arguments.get(0);
+            if (value instanceof LoxArray array) return (double) array.length();
+            if (value instanceof LoxMap map) return (double) map.size();
+            if (value instanceof String string) return (double) string.length();
+            throw new RuntimeError(null, "Can only take the length of arrays, maps and strings.");
+        });
+        NativeFunction.define(globals, "get", 2, (interpreter, arguments) -> {
+            if (arguments.get(0) instanceof LoxMap map) return map.get(LoxMap.key(null, arguments.get(1)));
+            LoxArray array = array(arguments.get(0));
+            return array.get(index(null, arguments.get(1), array.length()));
+        });
+        NativeFunction.define(globals, "set", 3, (interpreter, arguments) -> {
+            if (arguments.get(0) instanceof LoxMap map) {
+                int size = map.size();
+                map.put(LoxMap.key(null, arguments.get(1)), arguments.get(2));
+                if (map.size() > size) interpreter.allocate(null, AllocationBudget.MAP_ENTRY);
+                return arguments.get(2);
+            }
+            LoxArray array = array(arguments.get(0));
+            if (array.set(index(null, arguments.get(1), array.length()), arguments.get(2))) {
+                interpreter.allocate(null, AllocationBudget.array(array.length(), AllocationBudget.REFERENCE));
+            }
+            return arguments.get(2);
+        });
+        NativeFunction.define(globals, "push", 2, (interpreter, arguments) -> {
+            LoxArray array = array(arguments.get(0));
+            if (array.push(arguments.get(1))) {
+                interpreter.allocate(null, AllocationBudget.array(array.length(), AllocationBudget.REFERENCE));
+            }
+            // Growing by half each time comes to about one more element per element
+            interpreter.allocate(null, array.elementSize());
+            return null;
+        });
+        NativeFunction.define(globals, "pop", 1, (interpreter, arguments) -> {
+            LoxArray array = array(arguments.get(0));
+            if (array.length() == 0) throw new RuntimeError(null, "Can't pop from an empty array.");
+            return array.pop();
+        });
+        // slice(array, start, end) copies the elements from start up to but not including
+        // end. A nil end means the end of the array.
+        NativeFunction.define(globals, "slice", 3, (interpreter, arguments) -> {
+            LoxArray array = array(arguments.get(0));
+            int start = bound(arguments.get(1), array.length());
+            int end = arguments.get(2) == null ? array.length() : bound(arguments.get(2), array.length());
+            if (end < start) throw new RuntimeError(null, "Slice end must not be before its start.");
+            interpreter.allocate(null, AllocationBudget.array(end - start, array.elementSize()));
+            return array.slice(start, end);
+        });
+    }
+
+    static LoxArray array(Object value) throws RuntimeError {
+        if (value instanceof LoxArray array) return array;
+        throw new RuntimeError(null, "Expected an array.");
+    }
+
+    static int index(Token token, Object value, int length) throws RuntimeError {
+        if (!(value instanceof Double number) || number != Math.floor(number)) {
+            throw new RuntimeError(token, "Array index must be an integer.");
+        }
+        if (number < 0 || number >= length) {
+            throw new RuntimeError(token, "Array index " + Interpreter.stringify(number) + " out of bounds for length " + length + ".");
+        }
+        return number.intValue();
+    }
+
+    // Like index, but also allows length itself, as the end of a range
+    private static int bound(Object value, int length) throws RuntimeError {
+        if (!(value instanceof Double number) || number != Math.floor(number) || number < 0 || number > length) {
+            throw new RuntimeError(null, "Slice bounds must be integers between 0 and the array's length.");
+        }
+        return number.intValue();
+    }
+
+    int length() {
+        return size;
+    }
+
+    // The unboxed storage, only valid up to length(), or null if the array holds non-numbers.
+    double[] numbers() {
+        return numbers;
+    }
+
+    // What one element costs in the allocation budget, which depends on how it is stored.
+    int elementSize() {
+        return numbers != null ? AllocationBudget.NUMBER : AllocationBudget.REFERENCE;
+    }
+
+    Object get(int index) {
+        if (numbers != null) return numbers[index];
+        return values[index];
+    }
+
+    // Returns true if this switched the array to an Object[].
+    boolean set(int index, Object value) {
+        boolean boxed = false;
+        if (numbers != null) {
+            if (value instanceof Double number) {
+                numbers[index] = number;
+                return false;
+            }
+            box();
+            boxed = true;
+        }
+        values[index] = value;
+        return boxed;
+    }
+
+    // Returns true if this switched the array to an Object[].
+    boolean push(Object value) {
+        if (numbers != null && value instanceof Double number) {
+            if (size == numbers.length) numbers = Arrays.copyOf(numbers, grow(size));
+            numbers[size++] = number;
+            return false;
+        }
+
+        boolean boxed = numbers != null;
+        if (boxed) box();
+        if (size == values.length) values = Arrays.copyOf(values, grow(size));
+        values[size++] = value;
+        return boxed;
+    }
+
+    Object pop() {
+        if (numbers != null) return numbers[--size];
+
+        Object value = values[--size];
+        values[size] = null;
+        return value;
+    }
+
+    LoxArray slice(int start, int end) {
+        if (numbers != null) return new LoxArray(Arrays.copyOfRange(numbers, start, end), null, end - start);
+        return new LoxArray(null, Arrays.copyOfRange(values, start, end), end - start);
+    }
+
+    private static int grow(int size) {
+        return Math.max(8, size + (size >> 1));
+    }
+
+    private void box() {
+        values = new Object[Math.max(size, numbers.length)];
+        for (int i = 0; i < size; i++) {
+            values[i] = numbers[i];
+        }
+        numbers = null;
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder text = new StringBuilder("[");
+        for (int i = 0; i < size; i++) {
+            if (i > 0) text.append(", ");
+            text.append(Interpreter.stringify(get(i)));
+        }
+        return text.append(']').toString();
+    }
+}
@@ -0,0 +1,70 @@
+import javax.script.Bindings;
+import java.util.AbstractMap;
+import java.util.HashSet;
+import java.util.Set;
+
+// Exposes a set of Lox globals as javax.script Bindings. Reads and writes go straight
+// to the global slot table; only iteration builds a snapshot.
+public class LoxBindings extends AbstractMap<String, Object> implements Bindings {
+    final Environment globals;
+
+    public LoxBindings() {
+        this(Interpreter.newGlobals());
+    }
+
+    LoxBindings(Environment globals) {
+        this.globals = globals;
+    }
+
+    @Override
+    public Object put(String name, Object value) {
+        checkName(name);
+        Object previous = globals.lookUp(name);
+        globals.define(name, toLox(value));
+        return previous;
+    }
+
+    @Override
+    public Object get(Object key) {
+        checkKey(key);
+        return globals.lookUp((String) key);
+    }
+
+    @Override
+    public boolean containsKey(Object key) {
+        checkKey(key);
+        return globals.isDefined((String) key);
+    }
+
+    @Override
+    public Object remove(Object key) {
+        checkKey(key);
+        Object previous = globals.lookUp((String) key);
+        globals.undefine((String) key);
+        return previous;
+    }
+
+    @Override
+    public Set<Entry<String, Object>> entrySet() {
+        return new HashSet<>(globals.values().entrySet());
+    }
+
+    static Object toLox(Object value) {
+        if (value instanceof Double) return value;
+        if (value instanceof Number number) return number.doubleValue();
+        if (value instanceof Character character) return character.toString();
+        return value;
+    }
+
+    private static void checkKey(Object key) {
+        if (!(key instanceof String)) {
+            throw new ClassCastException("Binding names must be strings.");
+        }
+        checkName((String) key);
+    }
+
+    private static void checkName(String name) {
+        if (name == null) throw new NullPointerException("Binding name is null.");
+        if (name.isEmpty()) throw new IllegalArgumentException("Binding name is empty.");
+    }
+}
@@ -1,6 +1,9 @@
 import java.util.List;
 
 public interface LoxCallable {
+    // The arity of callables that take any number of arguments
+    int VARIADIC = -1;
+
     Object call(Interpreter interpreter, List<Object> arguments) throws RuntimeError;
 
     int arity();
@@ -0,0 +1,203 @@
+import java.util.Collections;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.LockSupport;
+
+// A FIFO channel between tasks, optionally bounded. Messages go through a lock-free
+// queue; a thread that has to wait registers itself and parks until woken.
+public class LoxChannel {
+    // The queue can't hold null, so nil is sent as this
+    private static final Object NIL = new Object();
+
+    private final Queue<Object> messages = new ConcurrentLinkedQueue<>();
+    // Messages queued plus sends that have reserved room but not yet enqueued
+    private final AtomicInteger count = new AtomicInteger();
+    private final int capacity;
+    private final Queue<Thread> waitingReceivers = new ConcurrentLinkedQueue<>();
+    private final Queue<Thread> waitingSenders = new ConcurrentLinkedQueue<>();
+
+    LoxChannel(int capacity) {
+        this.capacity = capacity;
+    }
+
+    static void defineNatives(Environment globals) {
+        NativeFunction.define(globals, "channel", 1, (interpreter, arguments) -> {
+            Object capacity = arguments.get(0);
+            if (capacity == null) return new LoxChannel(Integer.MAX_VALUE);
+            if (!(capacity instanceof Double size) || size < 1 || size != Math.floor(size)) {
+                throw new RuntimeError(null, "Channel capacity must be a positive integer or nil.");
+            }
+            return new LoxChannel((int) Math.min(size, Integer.MAX_VALUE));
+        });
+        NativeFunction.define(globals, "send", 2, (interpreter, arguments) -> {
+            Object target = arguments.get(0);
+            if (target instanceof LoxActor actor) {
+                actor.tell(interpreter, arguments.get(1));
+                return null;
+            }
+
+            channel(target).send(arguments.get(1), interpreter.limits());
+            return null;
+        });
+        NativeFunction.define(globals, "receive", 1, (interpreter, arguments) -> {
+            LoxChannel[] channels = {channel(arguments.get(0))};
+            Object[] received = new Object[1];
+            select(channels, received, -1, interpreter.limits());
+            return received[0];
+        });
+        // select(channel, handler, ..., timeout) passes the first message to arrive on any of
+        // the channels to that channel's handler and returns what it returns. Gives up and
+        // returns nil after timeout seconds, or waits forever if the timeout is nil.
+        NativeFunction.define(globals, "select", LoxCallable.VARIADIC, (interpreter, arguments) -> {
+            if (arguments.size() < 3 || arguments.size() % 2 == 0) {
+                throw new RuntimeError(null, "Expected select(channel, handler, ..., timeout).");
+            }
+
+            int cases = arguments.size() / 2;
+            LoxChannel[] channels = new LoxChannel[cases];
+            LoxCallable[] handlers = new LoxCallable[cases];
+            for (int i = 0; i < cases; i++) {
+                channels[i] = channel(arguments.get(2 * i));
+                if (!(arguments.get(2 * i + 1) instanceof LoxCallable handler) || handler.arity() != 1) {
+                    throw new RuntimeError(null, "Select handlers must be functions that take one argument.");
+                }
+                handlers[i] = handler;
+            }
+
+            Object timeout = arguments.get(arguments.size() - 1);
+            long timeoutNanos = -1;
+            if (timeout != null) {
+                if (!(timeout instanceof Double seconds) || seconds < 0) {
+                    throw new RuntimeError(null, "Select timeout must be a non-negative number or nil.");
+                }
+                timeoutNanos = (long) (seconds * TimeUnit.SECONDS.toNanos(1));
+            }
+
+            Object[] received = new Object[1];
+            int ready = select(channels, received, timeoutNanos, interpreter.limits());
+            if (ready < 0) return null;
+            return interpreter.callBack(handlers[ready], Collections.singletonList(received[0]));
+        });
+        NativeFunction.define(globals, "actor", 1, (interpreter, arguments) -> {
+            if (!(arguments.get(0) instanceof LoxCallable handler) || handler.arity() != 1) {
+                throw new RuntimeError(null, "An actor's handler must be a function that takes one argument.");
+            }
+            return new LoxActor(interpreter, handler);
+        });
+    }
+
+    private static LoxChannel channel(Object value) throws RuntimeError {
+        if (value instanceof LoxChannel channel) return channel;
+        throw new RuntimeError(null, "Expected a channel.");
+    }
+
+    // Blocks while the channel is full, but no longer than the sending run's time limit allows.
+    void send(Object message, Interpreter.Limits limits) throws RuntimeError {
+        Thread current = Thread.currentThread();
+        while (!reserve()) {
+            limits.checkTime();
+            waitingSenders.add(current);
+            try {
+                // Check again once registered, so a receive in between can't be missed
+                if (count.get() >= capacity) park(this, limits.nanosLeft());
+            } finally {
+                waitingSenders.remove(current);
+            }
+            checkInterrupted();
+        }
+
+        messages.offer(message == null ? NIL : message);
+        wakeAll(waitingReceivers);
+    }
+
+    private boolean reserve() {
+        while (true) {
+            int current = count.get();
+            if (current >= capacity) return false;
+            if (count.compareAndSet(current, current + 1)) return true;
+        }
+    }
+
+    // Returns the next message, NIL for a nil message, or null if there is none.
+    private Object poll() {
+        Object message = messages.poll();
+        if (message != null) {
+            count.decrementAndGet();
+            wakeAll(waitingSenders);
+        }
+        return message;
+    }
+
+    // Waits for a message on any of the channels. Returns the index of the channel it came
+    // from, or -1 if timeoutNanos (negative for no timeout) passes first. Waiting past the
+    // time limit of the run is a LimitExceeded.
+    static int select(LoxChannel[] channels, Object[] received, long timeoutNanos, Interpreter.Limits limits)
+            throws RuntimeError {
+        long deadline = System.nanoTime() + timeoutNanos;
+        Thread current = Thread.currentThread();
+        // Start at a random channel so a busy one can't starve the others
+        int start = channels.length == 1 ? 0 : ThreadLocalRandom.current().nextInt(channels.length);
+
+        while (true) {
+            for (int i = 0; i < channels.length; i++) {
+                int index = (start + i) % channels.length;
+                Object message = channels[index].poll();
+                if (message != null) {
+                    received[0] = message == NIL ? null : message;
+                    return index;
+                }
+            }
+
+            long remaining = deadline - System.nanoTime();
+            if (timeoutNanos >= 0 && remaining <= 0) return -1;
+            limits.checkTime();
+
+            for (LoxChannel channel : channels) channel.waitingReceivers.add(current);
+            try {
+                if (allEmpty(channels)) {
+                    long nanosLeft = limits.nanosLeft();
+                    park(channels[0], timeoutNanos < 0 ? nanosLeft : Math.min(remaining, nanosLeft));
+                }
+            } finally {
+                for (LoxChannel channel : channels) channel.waitingReceivers.remove(current);
+            }
+            checkInterrupted();
+        }
+    }
+
+    // Long.MAX_VALUE parks until woken.
+    private static void park(Object blocker, long nanos) {
+        if (nanos == Long.MAX_VALUE) {
+            LockSupport.park(blocker);
+        } else {
+            LockSupport.parkNanos(blocker, nanos);
+        }
+    }
+
+    private static boolean allEmpty(LoxChannel[] channels) {
+        for (LoxChannel channel : channels) {
+            if (!channel.messages.isEmpty()) return false;
+        }
+        return true;
+    }
+
+    private static void wakeAll(Queue<Thread> waiting) {
+        for (Thread thread : waiting) {
+            LockSupport.unpark(thread);
+        }
+    }
+
+    private static void checkInterrupted() throws RuntimeError {
+        if (Thread.currentThread().isInterrupted()) {
+            throw new RuntimeError(null, "Interrupted while waiting on a channel.");
+        }
+    }
+
+    @Override
+    public String toString() {
+        return capacity == Integer.MAX_VALUE ? "<channel>" : "<channel " + capacity + ">";
+    }
+}
@@ -19,12 +19,19 @@ public class LoxClass implements LoxCallable {
 
     @Override
     public LoxInstance call(Interpreter interpreter, List<Object> arguments) throws RuntimeError {
+        interpreter.allocate(null, AllocationBudget.INSTANCE);
+        LoxEvents.Instantiate event = new LoxEvents.Instantiate();
+        event.begin();
         LoxInstance instance = new LoxInstance(this);
         LoxFunction initializer = findMethod("init");
         if (initializer != null) {
             initializer.bind(instance).call(interpreter, arguments);
         }
 
+        if (event.shouldCommit()) {
+            event.className = name;
+            event.commit();
+        }
         return instance;
     }
 
@@ -0,0 +1,91 @@
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Threshold;
+import jdk.jfr.Timespan;
+
+// Flight Recorder events, so what scripts do shows up in the same recording as GC and CPU
+// use. While recording is off, begin() and commit() do nothing and the JIT can drop the
+// event objects, so an event costs next to nothing.
+final class LoxEvents {
+    private LoxEvents() {
+    }
+
+    @Name("lox.Compile")
+    @Label("Compile Script")
+    @Category("Lox")
+    @Description("Scanning, parsing and resolving one script")
+    @StackTrace(false)
+    static final class Compile extends Event {
+        @Label("Scan Time")
+        @Timespan(Timespan.NANOSECONDS)
+        long scanTime;
+
+        @Label("Parse Time")
+        @Timespan(Timespan.NANOSECONDS)
+        long parseTime;
+
+        @Label("Resolve Time")
+        @Timespan(Timespan.NANOSECONDS)
+        long resolveTime;
+
+        @Label("Tokens")
+        int tokens;
+
+        @Label("Tree Nodes")
+        @Description("Statements and expressions in the compiled tree, not counting lazily parsed function bodies")
+        int nodes;
+
+        @Label("Succeeded")
+        boolean succeeded;
+    }
+
+    @Name("lox.Run")
+    @Label("Run Script")
+    @Category("Lox")
+    @StackTrace(false)
+    static final class Run extends Event {
+        @Label("Succeeded")
+        boolean succeeded;
+    }
+
+    @Name("lox.Call")
+    @Label("Function Call")
+    @Category("Lox")
+    @Description("A call to a Lox function that took longer than the threshold")
+    @Threshold("1 ms")
+    @StackTrace(false)
+    static final class Call extends Event {
+        @Label("Function")
+        String function;
+
+        @Label("Line")
+        @Description("Where the function is declared")
+        int line;
+    }
+
+    @Name("lox.Instantiate")
+    @Label("Class Instantiation")
+    @Category("Lox")
+    @Description("Creating an instance, including running its initializer")
+    @StackTrace(false)
+    static final class Instantiate extends Event {
+        @Label("Class")
+        String className;
+    }
+
+    @Name("lox.RuntimeError")
+    @Label("Runtime Error")
+    @Category("Lox")
+    @StackTrace(false)
+    static final class RuntimeFailure extends Event {
+        @Label("Message")
+        String message;
+
+        @Label("Line")
+        int line;
+    }
+}
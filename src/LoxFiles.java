@@ -0,0 +1,301 @@
+import java.io.BufferedWriter;
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Collections;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+// File natives. Reading maps the file into memory, and lines are decoded one at a
+// time from a sliding window of the mapping, so a file of any size is read in
+// constant memory.
+//
+// Scripts only get at files if their runtime enabled file access, which may confine
+// them to one directory. The natives fail otherwise.
+public class LoxFiles {
+    private static final int WINDOW_SIZE = 1 << 26;
+
+    // What a runtime's scripts may touch: files under root, or any file if root is null.
+    // Keeps track of the files they have open, so the runtime can close them when a run
+    // ends.
+    static final class Access {
+        private final Path root;
+        private final Set<Closeable> open = ConcurrentHashMap.newKeySet();
+
+        Access(Path root) throws IOException {
+            this.root = root == null ? null : root.toRealPath();
+        }
+
+        // Relative paths are relative to root, or to the working directory if there is none.
+        Path resolve(String path) throws RuntimeError {
+            if (root == null) return Path.of(path);
+
+            Path resolved = root.resolve(path).normalize();
+            try {
+                // Symbolic links could still lead out of root, so the part of the path that
+                // exists is checked again with the links followed
+                Path existing = resolved;
+                while (existing != null && !Files.exists(existing)) existing = existing.getParent();
+                if (resolved.startsWith(root) && existing != null && existing.toRealPath().startsWith(root)) {
+                    return resolved;
+                }
+            } catch (IOException e) {
+                throw failure("open", path, e);
+            }
+            throw new RuntimeError(null, "File '" + path + "' is outside the directory scripts may use.");
+        }
+
+        void closeAll() throws IOException {
+            IOException failure = null;
+            for (Closeable file : open) {
+                try {
+                    file.close();
+                } catch (IOException e) {
+                    if (failure == null) failure = e;
+                }
+            }
+            if (failure != null) throw failure;
+        }
+    }
+
+    static class LineReader implements Closeable {
+        private final String path;
+        private final Access access;
+        private final FileChannel channel;
+        private final long fileSize;
+        private MappedByteBuffer window;
+        private long windowStart = 0;
+        private int windowSize = WINDOW_SIZE;
+        private byte[] scratch = new byte[256];
+        private boolean closed = false;
+
+        LineReader(String path, Path file, Access access) throws IOException {
+            this.path = path;
+            this.access = access;
+            this.channel = FileChannel.open(file, StandardOpenOption.READ);
+            this.fileSize = channel.size();
+            access.open.add(this);
+            map(0);
+        }
+
+        private void map(long start) throws IOException {
+            windowStart = start;
+            window = channel.map(FileChannel.MapMode.READ_ONLY, start, Math.min(windowSize, fileSize - start));
+        }
+
+        // Returns the next line without its terminator, or null at the end of the file.
+        String readLine() throws IOException {
+            if (closed) return null;
+
+            while (true) {
+                int start = window.position();
+                int limit = window.limit();
+                int end = start;
+                while (end < limit && window.get(end) != '\n') end++;
+
+                boolean atEndOfFile = windowStart + limit == fileSize;
+                if (end == limit && !atEndOfFile) {
+                    // The line runs past the window. Slide the window to the start of the
+                    // line, growing it if the line alone doesn't fit.
+                    if (start == 0) windowSize = (int) Math.min(Integer.MAX_VALUE, 2L * windowSize);
+                    map(windowStart + start);
+                    continue;
+                }
+
+                if (start == limit) {
+                    close();
+                    return null;
+                }
+
+                window.position(Math.min(end + 1, limit));
+                if (end > start && window.get(end - 1) == '\r') end--;
+                return decode(start, end);
+            }
+        }
+
+        private String decode(int start, int end) {
+            int length = end - start;
+            if (length > scratch.length) scratch = new byte[Math.max(length, scratch.length * 2)];
+            window.get(start, scratch, 0, length);
+            return new String(scratch, 0, length, StandardCharsets.UTF_8);
+        }
+
+        @Override
+        public void close() throws IOException {
+            if (closed) return;
+            closed = true;
+            window = null;
+            access.open.remove(this);
+            channel.close();
+        }
+
+        @Override
+        public String toString() {
+            return "<lines " + path + ">";
+        }
+    }
+
+    static class FileWriter implements Closeable {
+        private final String path;
+        private final Access access;
+        private final BufferedWriter writer;
+
+        FileWriter(String path, Path file, Access access) throws IOException {
+            this.path = path;
+            this.access = access;
+            this.writer = Files.newBufferedWriter(file, StandardCharsets.UTF_8);
+            access.open.add(this);
+        }
+
+        void write(String text) throws IOException {
+            writer.write(text);
+        }
+
+        @Override
+        public void close() throws IOException {
+            access.open.remove(this);
+            writer.close();
+        }
+
+        @Override
+        public String toString() {
+            return "<writer " + path + ">";
+        }
+    }
+
+    static void defineNatives(Environment globals) {
+        NativeFunction.define(globals, "readFile", 1, (interpreter, arguments) -> {
+            String path = path(arguments.get(0));
+            Path file = access(interpreter).resolve(path);
+            try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+                if (channel.size() > Integer.MAX_VALUE) {
+                    throw new RuntimeError(null, "File '" + path + "' is too large to read at once; read it by lines.");
+                }
+                // Charged before decoding, so a file too big for the allocation limit is never read
+                interpreter.allocate(null, AllocationBudget.string((int) channel.size()));
+                MappedByteBuffer contents = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+                return StandardCharsets.UTF_8.decode(contents).toString();
+            } catch (IOException e) {
+                throw failure("read", path, e);
+            }
+        });
+        NativeFunction.define(globals, "lines", 1, (interpreter, arguments) -> {
+            String path = path(arguments.get(0));
+            Access access = access(interpreter);
+            Path file = access.resolve(path);
+            try {
+                return new LineReader(path, file, access);
+            } catch (IOException e) {
+                throw failure("open", path, e);
+            }
+        });
+        // Returns the next line, or nil once the file is exhausted, which also closes it
+        NativeFunction.define(globals, "nextLine", 1, (interpreter, arguments) -> {
+            if (!(arguments.get(0) instanceof LineReader reader)) {
+                throw new RuntimeError(null, "Expected lines of a file.");
+            }
+            try {
+                String line = reader.readLine();
+                if (line != null) interpreter.allocate(null, AllocationBudget.string(line.length()));
+                return line;
+            } catch (IOException e) {
+                throw failure("read", reader.path, e);
+            }
+        });
+        NativeFunction.define(globals, "forEachLine", 2, (interpreter, arguments) -> {
+            String path = path(arguments.get(0));
+            if (!(arguments.get(1) instanceof LoxCallable function) || function.arity() != 1) {
+                throw new RuntimeError(null, "Expected a function that takes one argument.");
+            }
+
+            Access access = access(interpreter);
+            Path file = access.resolve(path);
+            LineReader reader;
+            try {
+                reader = new LineReader(path, file, access);
+            } catch (IOException e) {
+                throw failure("open", path, e);
+            }
+
+            try {
+                String line;
+                while ((line = reader.readLine()) != null) {
+                    interpreter.allocate(null, AllocationBudget.string(line.length()));
+                    interpreter.callBack(function, Collections.singletonList(line));
+                }
+                return null;
+            } catch (IOException e) {
+                throw failure("read", path, e);
+            } finally {
+                try {
+                    reader.close();
+                } catch (IOException ignored) {
+                    // Nothing was written, so there is nothing to lose
+                }
+            }
+        });
+        NativeFunction.define(globals, "openWriter", 1, (interpreter, arguments) -> {
+            String path = path(arguments.get(0));
+            Access access = access(interpreter);
+            Path file = access.resolve(path);
+            try {
+                return new FileWriter(path, file, access);
+            } catch (IOException e) {
+                throw failure("open", path, e);
+            }
+        });
+        NativeFunction.define(globals, "write", 2, (interpreter, arguments) -> {
+            write(arguments.get(0), Interpreter.stringify(arguments.get(1)));
+            return null;
+        });
+        NativeFunction.define(globals, "writeLine", 2, (interpreter, arguments) -> {
+            write(arguments.get(0), Interpreter.stringify(arguments.get(1)) + "\n");
+            return null;
+        });
+        NativeFunction.define(globals, "close", 1, (interpreter, arguments) -> {
+            Object file = arguments.get(0);
+            try {
+                if (file instanceof LineReader reader) {
+                    reader.close();
+                } else if (file instanceof FileWriter writer) {
+                    writer.close();
+                } else {
+                    throw new RuntimeError(null, "Can only close files.");
+                }
+            } catch (IOException e) {
+                throw failure("close", file.toString(), e);
+            }
+            return null;
+        });
+    }
+
+    private static Access access(Interpreter interpreter) throws RuntimeError {
+        if (interpreter.files != null) return interpreter.files;
+        throw new RuntimeError(null, "File access is not enabled.");
+    }
+
+    private static String path(Object value) throws RuntimeError {
+        if (value instanceof String path) return path;
+        throw new RuntimeError(null, "File path must be a string.");
+    }
+
+    private static void write(Object target, String text) throws RuntimeError {
+        if (!(target instanceof FileWriter writer)) {
+            throw new RuntimeError(null, "Can only write to a writer.");
+        }
+        try {
+            writer.write(text);
+        } catch (IOException e) {
+            throw failure("write", writer.path, e);
+        }
+    }
+
+    private static RuntimeError failure(String action, String path, IOException e) {
+        return new RuntimeError(null, "Could not " + action + " '" + path + "': " + e.getMessage());
+    }
+}
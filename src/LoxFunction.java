@@ -2,35 +2,71 @@ import java.util.List;
 
 public class LoxFunction implements LoxCallable {
     private final Stmt.Function declaration;
-    private final Environment closure;
+    // The globals of the module the function was declared in
+    private final Environment globals;
+    private final Cell[] upvalues;
+    private final LoxInstance receiver;
     private final boolean isInitalizer;
 
-    public LoxFunction(Stmt.Function declaration, Environment closure, boolean isInitializer) {
+    public LoxFunction(Stmt.Function declaration, Environment globals, Cell[] upvalues, boolean isInitializer) {
+        this(declaration, globals, upvalues, null, isInitializer);
+    }
+
+    private LoxFunction(Stmt.Function declaration, Environment globals, Cell[] upvalues, LoxInstance receiver, boolean isInitializer) {
         this.declaration = declaration;
-        this.closure = closure;
+        this.globals = globals;
+        this.upvalues = upvalues;
+        this.receiver = receiver;
         this.isInitalizer = isInitializer;
     }
 
     public LoxFunction bind(LoxInstance instance) {
-        Environment environment = new Environment(closure);
-        environment.define("this", instance);
-        return new LoxFunction(declaration, environment, isInitalizer);
+        return new LoxFunction(declaration, globals, upvalues, instance, isInitalizer);
+    }
+
+    private int capturedParameters() {
+        int count = declaration.receiver != null && declaration.receiver.captured ? 1 : 0;
+        for (Binding parameter : declaration.parameters) {
+            if (parameter.captured) count++;
+        }
+        return count;
     }
 
     @Override
     public Object call(Interpreter interpreter, List<Object> arguments) throws RuntimeError {
-        Environment environment = new Environment(closure);
-        for (int i = 0; i < declaration.params.size(); i++) {
-            environment.define(declaration.params.get(i).lexeme, arguments.get(i));
+        if (declaration.lazy != null) interpreter.compileLazy(declaration);
+
+        // Frames are the one allocation the budget gets back, when the call returns. Cells
+        // for captured parameters can outlive the call, so they are kept.
+        AllocationBudget allocations = interpreter.allocations;
+        long frameSize = AllocationBudget.array(declaration.frameSize, AllocationBudget.REFERENCE);
+        if (allocations != null) allocations.allocate(null, frameSize + (long) capturedParameters() * AllocationBudget.CELL);
+        LoxEvents.Call event = new LoxEvents.Call();
+        event.begin();
+
+        Object[] frame = new Object[declaration.frameSize];
+        if (declaration.receiver != null) {
+            declaration.receiver.initialize(frame, receiver);
+        }
+        for (int i = 0; i < declaration.parameters.length; i++) {
+            declaration.parameters[i].initialize(frame, arguments.get(i));
         }
         try {
-            interpreter.executeBlock(declaration.body, environment);
+            interpreter.executeBody(declaration.body, globals, frame, upvalues);
         } catch (Return returnValue) {
-            if (isInitalizer) return closure.getAt(0, "this");
+            if (isInitalizer) return receiver;
             return returnValue.value;
+        } finally {
+            if (allocations != null) allocations.release(frameSize);
+            event.end();
+            if (event.shouldCommit()) {
+                event.function = declaration.name.lexeme;
+                event.line = declaration.name.line;
+                event.commit();
+            }
         }
 
-        if (isInitalizer) return closure.getAt(0, "this");
+        if (isInitalizer) return receiver;
         return null;
     }
 
@@ -39,6 +75,10 @@ public class LoxFunction implements LoxCallable {
         return declaration.params.size();
     }
 
+    String name() {
+        return declaration.name.lexeme;
+    }
+
     @Override
     public String toString() {
         return "<fn " + declaration.name.lexeme + ">";
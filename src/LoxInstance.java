@@ -1,17 +1,21 @@
-import java.util.HashMap;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
 public class LoxInstance {
+    // Tasks can share instances, so fields live in a concurrent map, which can't hold null
+    private static final Object NIL = new Object();
+
     private final LoxClass klass;
-    private final Map<String, Object> fields = new HashMap<>();
+    private final Map<String, Object> fields = new ConcurrentHashMap<>();
 
     public LoxInstance(LoxClass klass) {
         this.klass = klass;
     }
 
     public Object get(Token name) throws RuntimeError {
-        if (fields.containsKey(name.lexeme)) {
-            return fields.get(name.lexeme);
+        Object value = fields.get(name.lexeme);
+        if (value != null) {
+            return value == NIL ? null : value;
         }
 
         LoxFunction method = klass.findMethod(name.lexeme);
@@ -20,12 +24,17 @@ public class LoxInstance {
         throw new RuntimeError(name, "Undefined property '" + name.lexeme + "'.");
     }
 
+    boolean hasField(String name) {
+        return fields.containsKey(name);
+    }
+
     @Override
     public String toString() {
         return klass.name + " instance";
     }
 
-    public void set(Token name, Object value) {
-        fields.put(name.lexeme, value);
+    // Returns whether the instance didn't have the field before.
+    public boolean set(Token name, Object value) {
+        return fields.put(name.lexeme, value == null ? NIL : value) == null;
     }
 }
@@ -0,0 +1,187 @@
+// A hash map from strings, numbers, booleans and nil to Lox values, with keys compared
+// like Lox's ==. Entries are stored inline in one array, key then value, and collisions
+// are resolved by linear probing, so an entry costs two references and no node object.
+// Maps aren't synchronized: share them between tasks read-only, or hand them over
+// through a channel.
+public class LoxMap {
+    // Stands in for a nil key, since a null key marks an empty slot
+    private static final Object NIL = new Object();
+    private static final int MIN_CAPACITY = 8;
+
+    private Object[] table;
+    private int size;
+
+    LoxMap(int expectedSize) {
+        table = new Object[2 * capacityFor(expectedSize)];
+    }
+
+    static void defineNatives(Environment globals) {
+        // map(expectedSize) sizes the table so that many entries fit without growing it.
+        // Pass nil for the default size.
+        NativeFunction.define(globals, "map", 1, (interpreter, arguments) -> {
+            Object expected = arguments.get(0);
+            if (expected == null) {
+                interpreter.allocate(null, AllocationBudget.array(2 * capacityFor(0), AllocationBudget.REFERENCE));
+                return new LoxMap(0);
+            }
+            if (!(expected instanceof Double count) || count < 0 || count != Math.floor(count) || count > 1 << 29) {
+                throw new RuntimeError(null, "Expected size must be a non-negative integer or nil.");
+            }
+            interpreter.allocate(null, AllocationBudget.array(2 * capacityFor(count.intValue()), AllocationBudget.REFERENCE));
+            return new LoxMap(count.intValue());
+        });
+        NativeFunction.define(globals, "size", 1, (interpreter, arguments) ->
+                (double) map(arguments.get(0)).size());
+        NativeFunction.define(globals, "has", 2, (interpreter, arguments) ->
+                map(arguments.get(0)).containsKey(key(null, arguments.get(1))));
+        NativeFunction.define(globals, "remove", 2, (interpreter, arguments) ->
+                map(arguments.get(0)).remove(key(null, arguments.get(1))));
+        NativeFunction.define(globals, "keys", 1, (interpreter, arguments) -> {
+            LoxMap map = map(arguments.get(0));
+            LoxArray keys = map.entries(0);
+            interpreter.allocate(null, AllocationBudget.array(keys.length(), keys.elementSize()));
+            return keys;
+        });
+        NativeFunction.define(globals, "values", 1, (interpreter, arguments) -> {
+            LoxMap map = map(arguments.get(0));
+            LoxArray values = map.entries(1);
+            interpreter.allocate(null, AllocationBudget.array(values.length(), values.elementSize()));
+            return values;
+        });
+    }
+
+    static LoxMap map(Object value) throws RuntimeError {
+        if (value instanceof LoxMap map) return map;
+        throw new RuntimeError(null, "Expected a map.");
+    }
+
+    // Checks that value can be used as a key and returns the form it is stored in.
+    static Object key(Token token, Object value) throws RuntimeError {
+        if (value == null) return NIL;
+        if (value instanceof String || value instanceof Double || value instanceof Boolean) return value;
+        throw new RuntimeError(token, "Map keys must be strings, numbers, booleans or nil.");
+    }
+
+    int size() {
+        return size;
+    }
+
+    Object get(Object key) {
+        int index = find(key);
+        return index < 0 ? null : table[index + 1];
+    }
+
+    boolean containsKey(Object key) {
+        return find(key) >= 0;
+    }
+
+    void put(Object key, Object value) {
+        int mask = (table.length >> 1) - 1;
+        int slot = hash(key) & mask;
+        while (true) {
+            Object existing = table[2 * slot];
+            if (existing == null) break;
+            if (existing.equals(key)) {
+                table[2 * slot + 1] = value;
+                return;
+            }
+            slot = (slot + 1) & mask;
+        }
+
+        table[2 * slot] = key;
+        table[2 * slot + 1] = value;
+        // Keep the load factor at or below 3/4
+        if (++size * 4 > (table.length >> 1) * 3) resize(table.length);
+    }
+
+    Object remove(Object key) {
+        int index = find(key);
+        if (index < 0) return null;
+
+        Object value = table[index + 1];
+        int mask = (table.length >> 1) - 1;
+        int hole = index >> 1;
+        int next = (hole + 1) & mask;
+        // Shift later entries of the probe sequence back, rather than leaving a tombstone
+        while (table[2 * next] != null) {
+            int ideal = hash(table[2 * next]) & mask;
+            if (((next - ideal) & mask) >= ((next - hole) & mask)) {
+                table[2 * hole] = table[2 * next];
+                table[2 * hole + 1] = table[2 * next + 1];
+                hole = next;
+            }
+            next = (next + 1) & mask;
+        }
+
+        table[2 * hole] = null;
+        table[2 * hole + 1] = null;
+        size--;
+        return value;
+    }
+
+    // Returns the index in the table of key's slot, or -1.
+    private int find(Object key) {
+        int mask = (table.length >> 1) - 1;
+        int slot = hash(key) & mask;
+        while (true) {
+            Object existing = table[2 * slot];
+            if (existing == null) return -1;
+            if (existing.equals(key)) return 2 * slot;
+            slot = (slot + 1) & mask;
+        }
+    }
+
+    private void resize(int capacity) {
+        Object[] old = table;
+        table = new Object[2 * capacity];
+        int mask = capacity - 1;
+        for (int i = 0; i < old.length; i += 2) {
+            if (old[i] == null) continue;
+
+            int slot = hash(old[i]) & mask;
+            while (table[2 * slot] != null) {
+                slot = (slot + 1) & mask;
+            }
+            table[2 * slot] = old[i];
+            table[2 * slot + 1] = old[i + 1];
+        }
+    }
+
+    private static int hash(Object key) {
+        // Spread the bits, as linear probing suffers from clustered hash codes
+        int h = key.hashCode() * 0x9E3779B9;
+        return h ^ (h >>> 16);
+    }
+
+    private static int capacityFor(int expectedSize) {
+        long needed = (long) expectedSize * 4 / 3 + 1;
+        int capacity = MIN_CAPACITY;
+        while (capacity < needed) capacity <<= 1;
+        return capacity;
+    }
+
+    // The keys (offset 0) or values (offset 1) as an array, in table order.
+    private LoxArray entries(int offset) {
+        Object[] entries = new Object[size];
+        int count = 0;
+        for (int i = 0; i < table.length; i += 2) {
+            if (table[i] == null) continue;
+            Object entry = table[i + offset];
+            entries[count++] = entry == NIL ? null : entry;
+        }
+        return LoxArray.of(entries);
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder text = new StringBuilder("{");
+        for (int i = 0; i < table.length; i += 2) {
+            if (table[i] == null) continue;
+            if (text.length() > 1) text.append(", ");
+            text.append(Interpreter.stringify(table[i] == NIL ? null : table[i]));
+            text.append(": ");
+            text.append(Interpreter.stringify(table[i + 1]));
+        }
+        return text.append('}').toString();
+    }
+}
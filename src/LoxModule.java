@@ -0,0 +1,69 @@
+import java.io.IOException;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+// A compiled module. Modules are scanned, parsed and resolved once per process and
+// shared by every runtime that imports them; each runtime then runs its own instance
+// of the module against separate globals. Since most of a library goes unused by any
+// one script, module functions are parsed lazily.
+final class LoxModule {
+    private static final Map<Path, LoxModule> cache = new ConcurrentHashMap<>();
+
+    // A module as run by one runtime
+    static final class Instance {
+        final LoxModule module;
+        final Environment globals;
+
+        Instance(LoxModule module, Environment globals) {
+            this.module = module;
+            this.globals = globals;
+        }
+
+        List<String> exports() {
+            return module.exports;
+        }
+    }
+
+    final Path path;
+    final CompiledScript script;
+    // The top level names an import copies into the importing globals
+    final List<String> exports;
+    private final FileTime modified;
+
+    private LoxModule(Path path, FileTime modified, CompiledScript script) {
+        this.path = path;
+        this.modified = modified;
+        this.script = script;
+
+        List<String> exports = new ArrayList<>();
+        for (Stmt statement : script.statements()) {
+            if (statement instanceof Stmt.Var var) exports.add(var.name.lexeme);
+            if (statement instanceof Stmt.Function function) exports.add(function.name.lexeme);
+            if (statement instanceof Stmt.Class klass) exports.add(klass.name.lexeme);
+        }
+        this.exports = Collections.unmodifiableList(exports);
+    }
+
+    // Returns null if the module has static errors, which are sent to the reporter. A module
+    // is compiled again only when its file has been modified since it was cached.
+    static LoxModule load(Path path, ErrorReporter reporter, Path compileCache) throws IOException {
+        FileTime modified = Files.getLastModifiedTime(path);
+        LoxModule cached = cache.get(path);
+        if (cached != null && cached.modified.equals(modified)) return cached;
+
+        String source = new String(Files.readAllBytes(path), Charset.defaultCharset());
+        CompiledScript script = LoxcCache.compile(path, source, reporter, true, compileCache);
+        if (script == null) return null;
+
+        LoxModule module = new LoxModule(path, modified, script);
+        cache.put(path, module);
+        return module;
+    }
+}
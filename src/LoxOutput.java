@@ -0,0 +1,104 @@
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.util.Arrays;
+
+// Where print writes to. Output collects in a large buffer that is written out when it
+// fills up, when the script calls flush(), and when a run ends or fails. The buffer starts
+// small and grows as a script prints, so wrapping a writer for one short call is cheap.
+public class LoxOutput {
+    static final int DEFAULT_BUFFER_SIZE = 1 << 16;
+    private static final int INITIAL_BUFFER_SIZE = 256;
+    private static final String NEWLINE = System.lineSeparator();
+
+    private final Writer writer;
+    private final int bufferSize;
+    private char[] buffer = new char[0];
+    private int count = 0;
+
+    public LoxOutput(Writer writer) {
+        this(writer, DEFAULT_BUFFER_SIZE);
+    }
+
+    public LoxOutput(Writer writer, int bufferSize) {
+        this.writer = writer;
+        this.bufferSize = Math.max(bufferSize, 64);
+    }
+
+    // Tasks share their spawner's output, so each line is written under the lock
+    synchronized void println(Object value) {
+        if (value instanceof Double number && Interpreter.isPlainInteger(number)) {
+            writeLong((long) (double) number);
+        } else {
+            write(Interpreter.stringify(value));
+        }
+        write(NEWLINE);
+    }
+
+    public synchronized void flush() {
+        try {
+            writeBuffer();
+            writer.flush();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private void write(String text) {
+        int length = text.length();
+        if (length > buffer.length - count) grow(length);
+        if (length > buffer.length - count) {
+            writeBuffer();
+            if (length > buffer.length) {
+                try {
+                    writer.write(text);
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+                return;
+            }
+        }
+
+        text.getChars(0, length, buffer, count);
+        count += length;
+    }
+
+    // Formats the digits straight into the buffer, without going through a String
+    private void writeLong(long value) {
+        if (buffer.length - count < 20) grow(20);
+        if (buffer.length - count < 20) writeBuffer();
+
+        if (value < 0) {
+            buffer[count++] = '-';
+            value = -value;
+        }
+
+        int digits = 1;
+        for (long rest = value / 10; rest > 0; rest /= 10) digits++;
+
+        for (int i = count + digits - 1; i >= count; i--) {
+            buffer[i] = (char) ('0' + value % 10);
+            value /= 10;
+        }
+        count += digits;
+    }
+
+    // Makes room for needed more characters if the buffer can still grow.
+    private void grow(int needed) {
+        if (buffer.length == bufferSize) return;
+
+        int size = Math.max(buffer.length * 2, INITIAL_BUFFER_SIZE);
+        while (size < count + needed && size < bufferSize) size *= 2;
+        buffer = Arrays.copyOf(buffer, Math.min(size, bufferSize));
+    }
+
+    private void writeBuffer() {
+        if (count == 0) return;
+        try {
+            writer.write(buffer, 0, count);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        count = 0;
+    }
+}
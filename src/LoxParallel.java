@@ -0,0 +1,230 @@
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.RecursiveTask;
+
+// Data parallel natives. A source is either an array, whose elements are passed to the
+// callback, or a count n, which passes the indices 0 to n - 1. Work is split into ranges
+// on a fork-join pool, and each range runs on its own forked Interpreter.
+public class LoxParallel {
+    private static final ForkJoinPool pool = new ForkJoinPool(Runtime.getRuntime().availableProcessors());
+
+    // Carries a RuntimeError, which is checked, out of a fork-join task
+    private static class Failure extends RuntimeException {
+        private static final long serialVersionUID = 1L;
+
+        final RuntimeError error;
+
+        Failure(RuntimeError error) {
+            super(null, null, false, false);
+            this.error = error;
+        }
+    }
+
+    private interface Source {
+        int length();
+
+        Object get(int index);
+    }
+
+    static void defineNatives(Environment globals) {
+        NativeFunction.define(globals, "parallelForEach", 2, (interpreter, arguments) -> {
+            Source source = source(arguments.get(0));
+            LoxCallable function = function(arguments.get(1), 1);
+            invoke(new ForEachRange(interpreter, source, function, 0, source.length(), threshold(source)));
+            return null;
+        });
+        NativeFunction.define(globals, "parallelMap", 2, (interpreter, arguments) -> {
+            Source source = source(arguments.get(0));
+            LoxCallable function = function(arguments.get(1), 1);
+            interpreter.allocate(null, AllocationBudget.array(source.length(), AllocationBudget.REFERENCE));
+            Object[] results = new Object[source.length()];
+            invoke(new MapRange(interpreter, source, function, results, 0, results.length, threshold(source)));
+            return LoxArray.of(results);
+        });
+        // The combiner must be associative and the identity must leave values unchanged, as
+        // each range is folded from the identity before the partial results are combined.
+        NativeFunction.define(globals, "parallelReduce", 3, (interpreter, arguments) -> {
+            Source source = source(arguments.get(0));
+            LoxCallable combiner = function(arguments.get(1), 2);
+            Object identity = arguments.get(2);
+            return invoke(new ReduceRange(interpreter, source, combiner, identity, 0, source.length(), threshold(source)));
+        });
+    }
+
+    private static Source source(Object value) throws RuntimeError {
+        if (value instanceof LoxArray array) {
+            return new Source() {
+                @Override
+                public int length() {
+                    return array.length();
+                }
+
+                @Override
+                public Object get(int index) {
+                    return array.get(index);
+                }
+            };
+        }
+
+        if (value instanceof Double count && count >= 0 && count == Math.floor(count) && count <= Integer.MAX_VALUE) {
+            int length = count.intValue();
+            return new Source() {
+                @Override
+                public int length() {
+                    return length;
+                }
+
+                @Override
+                public Object get(int index) {
+                    return (double) index;
+                }
+            };
+        }
+
+        throw new RuntimeError(null, "Expected an array or a non-negative integer count.");
+    }
+
+    private static LoxCallable function(Object value, int arity) throws RuntimeError {
+        if (value instanceof LoxCallable function && function.arity() == arity) return function;
+        throw new RuntimeError(null, "Expected a function that takes " + arity + (arity == 1 ? " argument." : " arguments."));
+    }
+
+    // Enough ranges to keep every worker busy when elements take uneven time
+    private static int threshold(Source source) {
+        return Math.max(1, source.length() / (pool.getParallelism() * 8));
+    }
+
+    private static <T> T invoke(ForkJoinTask<T> task) throws RuntimeError {
+        try {
+            return pool.invoke(task);
+        } catch (Failure failure) {
+            throw failure.error;
+        }
+    }
+
+    private static Object call(Interpreter worker, LoxCallable function, List<Object> arguments) {
+        try {
+            return worker.callBack(function, arguments);
+        } catch (RuntimeError error) {
+            throw new Failure(error);
+        }
+    }
+
+    private static class ForEachRange extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+
+        private final Interpreter interpreter;
+        private final Source source;
+        private final LoxCallable function;
+        private final int from;
+        private final int to;
+        private final int threshold;
+
+        ForEachRange(Interpreter interpreter, Source source, LoxCallable function, int from, int to, int threshold) {
+            this.interpreter = interpreter;
+            this.source = source;
+            this.function = function;
+            this.from = from;
+            this.to = to;
+            this.threshold = threshold;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from <= threshold) {
+                Interpreter worker = interpreter.fork();
+                for (int i = from; i < to; i++) {
+                    call(worker, function, Collections.singletonList(source.get(i)));
+                }
+                return;
+            }
+
+            int middle = (from + to) >>> 1;
+            invokeAll(new ForEachRange(interpreter, source, function, from, middle, threshold),
+                    new ForEachRange(interpreter, source, function, middle, to, threshold));
+        }
+    }
+
+    private static class MapRange extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+
+        private final Interpreter interpreter;
+        private final Source source;
+        private final LoxCallable function;
+        private final Object[] results;
+        private final int from;
+        private final int to;
+        private final int threshold;
+
+        MapRange(Interpreter interpreter, Source source, LoxCallable function, Object[] results, int from, int to, int threshold) {
+            this.interpreter = interpreter;
+            this.source = source;
+            this.function = function;
+            this.results = results;
+            this.from = from;
+            this.to = to;
+            this.threshold = threshold;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from <= threshold) {
+                Interpreter worker = interpreter.fork();
+                for (int i = from; i < to; i++) {
+                    results[i] = call(worker, function, Collections.singletonList(source.get(i)));
+                }
+                return;
+            }
+
+            int middle = (from + to) >>> 1;
+            invokeAll(new MapRange(interpreter, source, function, results, from, middle, threshold),
+                    new MapRange(interpreter, source, function, results, middle, to, threshold));
+        }
+    }
+
+    private static class ReduceRange extends RecursiveTask<Object> {
+        private static final long serialVersionUID = 1L;
+
+        private final Interpreter interpreter;
+        private final Source source;
+        private final LoxCallable combiner;
+        private final Object identity;
+        private final int from;
+        private final int to;
+        private final int threshold;
+
+        ReduceRange(Interpreter interpreter, Source source, LoxCallable combiner, Object identity, int from, int to, int threshold) {
+            this.interpreter = interpreter;
+            this.source = source;
+            this.combiner = combiner;
+            this.identity = identity;
+            this.from = from;
+            this.to = to;
+            this.threshold = threshold;
+        }
+
+        @Override
+        protected Object compute() {
+            if (to - from <= threshold) {
+                Interpreter worker = interpreter.fork();
+                Object accumulator = identity;
+                for (int i = from; i < to; i++) {
+                    accumulator = call(worker, combiner, Arrays.asList(accumulator, source.get(i)));
+                }
+                return accumulator;
+            }
+
+            int middle = (from + to) >>> 1;
+            ReduceRange left = new ReduceRange(interpreter, source, combiner, identity, from, middle, threshold);
+            ReduceRange right = new ReduceRange(interpreter, source, combiner, identity, middle, to, threshold);
+            right.fork();
+            Object leftResult = left.compute();
+            Object rightResult = right.join();
+            return call(interpreter.fork(), combiner, Arrays.asList(leftResult, rightResult));
+        }
+    }
+}
@@ -0,0 +1,140 @@
+import java.io.IOException;
+import java.io.Writer;
+import java.lang.ref.WeakReference;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Queue;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.locks.LockSupport;
+
+// A sampling profiler for Lox code. Every interpreter of a profiled run keeps a shadow
+// stack of the functions it is in and the lines they were called from, and a daemon
+// thread copies the stacks at a fixed interval. The result is written in the collapsed
+// format flame graph tools read: one line per distinct stack, frames separated by ';',
+// followed by how many samples had that stack.
+//
+// The sampler reads the stacks without synchronizing with the threads pushing onto them,
+// so a sample taken mid call can be off by a frame. That keeps a call as cheap as two
+// array stores; interpreters of runs that aren't profiled have no stack at all.
+final class LoxProfiler {
+    // The calls one interpreter is in, innermost last
+    static final class Stack {
+        private final String root;
+        private LoxCallable[] callees = new LoxCallable[64];
+        private int[] lines = new int[64];
+        private int depth = 0;
+
+        private Stack(String root) {
+            this.root = root;
+        }
+
+        void push(LoxCallable callee, int line) {
+            if (depth == callees.length) {
+                lines = Arrays.copyOf(lines, depth * 2);
+                callees = Arrays.copyOf(callees, depth * 2);
+            }
+            lines[depth] = line;
+            callees[depth] = callee;
+            depth++;
+        }
+
+        void pop() {
+            callees[--depth] = null;
+        }
+
+        // Frames are named after their function and, but for the innermost, the line
+        // they were in when they made the next call. Null if the stack is empty.
+        private String sample(boolean evenIfEmpty) {
+            LoxCallable[] callees = this.callees;
+            int[] lines = this.lines;
+            int depth = Math.min(this.depth, Math.min(callees.length, lines.length));
+            if (depth == 0 && !evenIfEmpty) return null;
+
+            StringBuilder stack = new StringBuilder(root);
+            for (int i = 0; i < depth; i++) {
+                LoxCallable callee = callees[i];
+                // Popped while being read
+                if (callee == null) break;
+                stack.append(':').append(lines[i]).append(';').append(name(callee));
+            }
+            return stack.toString();
+        }
+    }
+
+    private final long intervalNanos;
+    private final Stack main = new Stack("<script>");
+    // Weakly held, as a run may start far more tasks than are alive at once
+    private final Queue<WeakReference<Stack>> forks = new ConcurrentLinkedQueue<>();
+    private final Map<String, Integer> samples = new HashMap<>();
+    private final Thread sampler;
+    private volatile boolean running = true;
+
+    LoxProfiler(long intervalNanos) {
+        this.intervalNanos = intervalNanos;
+        this.sampler = new Thread(this::sample, "lox-profiler");
+        sampler.setDaemon(true);
+    }
+
+    Stack mainStack() {
+        return main;
+    }
+
+    Stack newStack() {
+        Stack stack = new Stack("<task>");
+        forks.add(new WeakReference<>(stack));
+        return stack;
+    }
+
+    void start() {
+        sampler.start();
+    }
+
+    void stop() {
+        running = false;
+        LockSupport.unpark(sampler);
+        try {
+            sampler.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void sample() {
+        while (running) {
+            LockSupport.parkNanos(intervalNanos);
+            if (!running) return;
+
+            record(main.sample(true));
+            for (Iterator<WeakReference<Stack>> i = forks.iterator(); i.hasNext(); ) {
+                Stack stack = i.next().get();
+                if (stack == null) {
+                    i.remove();
+                } else {
+                    record(stack.sample(false));
+                }
+            }
+        }
+    }
+
+    private void record(String stack) {
+        if (stack != null) samples.merge(stack, 1, Integer::sum);
+    }
+
+    // Call after stop().
+    void write(Writer out) throws IOException {
+        for (Map.Entry<String, Integer> entry : new TreeMap<>(samples).entrySet()) {
+            out.write(entry.getKey() + " " + entry.getValue() + "\n");
+        }
+        out.flush();
+    }
+
+    private static String name(LoxCallable callee) {
+        if (callee instanceof LoxFunction function) return function.name();
+        if (callee instanceof LoxClass klass) return klass.name;
+        if (callee instanceof NativeFunction function) return function.name();
+        return String.valueOf(callee);
+    }
+}
@@ -0,0 +1,229 @@
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.PrintStream;
+import java.io.PrintWriter;
+import java.io.Writer;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+
+// An isolated interpreter with its own globals, output and error reporting. A runtime
+// must only be used by one thread at a time, but separate runtimes can run in parallel.
+public class LoxRuntime {
+    private final ErrorReporter reporter;
+    private final Interpreter interpreter;
+    // The natives, which reset() restores the globals to
+    private final Environment baseline;
+    private final LoxOutput out;
+    private final PrintWriter err;
+    private LoxOutput redirected;
+    private boolean lazyParsing = false;
+    private long stepLimit = 0;
+    private int callDepthLimit = 0;
+    private Duration timeLimit = Duration.ZERO;
+    private boolean allocationAccounting = false;
+    private long allocationLimit = 0;
+    private AllocationBudget allocations;
+    private LoxFiles.Access files;
+    private Path profileOutput;
+    private Duration profileInterval;
+
+    public LoxRuntime(PrintStream out, PrintStream err) {
+        this(new OutputStreamWriter(out), new PrintWriter(err, true));
+    }
+
+    public LoxRuntime(Writer out, PrintWriter err) {
+        this(new LoxOutput(out), err);
+    }
+
+    public LoxRuntime(LoxOutput out, PrintWriter err) {
+        this(out, err, new Environment.Slots());
+    }
+
+    // Runtimes that share a slot table can run the same CompiledScript in turn without its
+    // Bindings looking their globals up again.
+    LoxRuntime(LoxOutput out, PrintWriter err, Environment.Slots slots) {
+        this.out = out;
+        this.err = err;
+        this.reporter = new ErrorReporter(err);
+        this.interpreter = Interpreter.create(reporter, out, Interpreter.newGlobals(slots));
+        this.baseline = interpreter.globals.copy();
+    }
+
+    public void run(String source) {
+        CompiledScript script = compile(source);
+        if (script == null) return;
+
+        run(script);
+    }
+
+    // Runs a script file, whose imports are looked up relative to its directory.
+    public void runFile(Path path) throws IOException {
+        String source = new String(Files.readAllBytes(path), Charset.defaultCharset());
+        Path previousDirectory = interpreter.directory;
+        interpreter.directory = path.toAbsolutePath().getParent();
+        try {
+            CompiledScript script = LoxcCache.compile(path, source, reporter, lazyParsing, interpreter.compileCache);
+            if (script != null) run(script);
+        } finally {
+            interpreter.directory = previousDirectory;
+        }
+    }
+
+    // Returns null if the source has static errors, which are sent to this runtime's error sink.
+    public CompiledScript compile(String source) {
+        return CompiledScript.compile(source, reporter, lazyParsing);
+    }
+
+    // Defers parsing top level function bodies to their first call, which speeds up starting
+    // scripts that define much more than they run, but reports errors in a body only then.
+    public void setLazyParsing(boolean lazyParsing) {
+        this.lazyParsing = lazyParsing;
+    }
+
+    // Limits each run to a number of loop iterations and calls, 0 for no limit. A run that
+    // goes over it is stopped with a LimitExceeded.
+    public void setStepLimit(long steps) {
+        this.stepLimit = steps;
+    }
+
+    public void setCallDepthLimit(int depth) {
+        this.callDepthLimit = depth;
+    }
+
+    // Zero for no limit. The clock is read every few thousand steps, so a run can go over by
+    // as long as those take.
+    public void setTimeLimit(Duration time) {
+        this.timeLimit = time;
+    }
+
+    // Keeps count of what each run allocates, see allocations().
+    public void setAllocationAccounting(boolean allocationAccounting) {
+        this.allocationAccounting = allocationAccounting;
+    }
+
+    // Stops a run with a runtime error once it has allocated more than this many bytes, as
+    // estimated by AllocationBudget. This budgets allocation, not live memory: a script that
+    // streams a file is charged for every line it reads, so size the limit to the input.
+    // Zero for no limit. Setting a limit turns on accounting.
+    public void setAllocationLimit(long bytes) {
+        this.allocationLimit = bytes;
+    }
+
+    // What the last run allocated, or null if accounting was off.
+    public AllocationBudget allocations() {
+        return allocations;
+    }
+
+    // Keeps script files and modules compiled in directory, which is created when first
+    // needed, so they only compile again once they change. Null, the default, turns it off.
+    public void setCompileCache(Path directory) {
+        interpreter.compileCache = directory;
+    }
+
+    // Lets scripts read and write files under root, relative paths being relative to it.
+    // Files a run leaves open are closed when it ends.
+    public void enableFileAccess(Path root) throws IOException {
+        setFileAccess(new LoxFiles.Access(root));
+    }
+
+    // Lets scripts read and write any file the process can.
+    public void enableFileAccess() throws IOException {
+        setFileAccess(new LoxFiles.Access(null));
+    }
+
+    private void setFileAccess(LoxFiles.Access files) {
+        this.files = files;
+        interpreter.files = files;
+    }
+
+    // Samples which Lox functions each run is in every interval, and writes the samples to
+    // output as collapsed stacks, for flame graph tools, when the run ends. A null output
+    // turns profiling off; otherwise the interval must be positive.
+    public void setProfiling(Path output, Duration interval) {
+        if (output != null && (interval == null || interval.isNegative() || interval.isZero())) {
+            throw new IllegalArgumentException("Profiling interval must be positive: " + interval);
+        }
+        this.profileOutput = output;
+        this.profileInterval = interval;
+    }
+
+    public void run(CompiledScript script) {
+        Interpreter.Limits limits = interpreter.limit(stepLimit, callDepthLimit, timeLimit.toNanos());
+        allocations = allocationAccounting || allocationLimit > 0
+                ? new AllocationBudget(allocationLimit) : null;
+        interpreter.allocations = allocations;
+        LoxProfiler profiler = profileOutput != null ? new LoxProfiler(profileInterval.toNanos()) : null;
+        interpreter.profiler = profiler;
+        interpreter.stack = profiler != null ? profiler.mainStack() : null;
+        if (profiler != null) profiler.start();
+        try {
+            interpreter.interpret(script.statements(), script.frameSize());
+        } catch (LimitExceeded e) {
+            // Tasks the script didn't join would run on otherwise
+            limits.stop();
+            throw e;
+        } finally {
+            output().flush();
+            if (files != null) closeFiles();
+            if (profiler != null) writeProfile(profiler);
+        }
+    }
+
+    private void closeFiles() {
+        try {
+            files.closeAll();
+        } catch (IOException e) {
+            err.println("Could not close a file the script left open: " + e.getMessage());
+        }
+    }
+
+    private void writeProfile(LoxProfiler profiler) {
+        profiler.stop();
+        interpreter.profiler = null;
+        interpreter.stack = null;
+        try (Writer writer = Files.newBufferedWriter(profileOutput)) {
+            profiler.write(writer);
+        } catch (IOException e) {
+            err.println("Could not write profile to " + profileOutput + ": " + e.getMessage());
+        }
+    }
+
+    // Sends output and errors of later runs somewhere else, e.g. to the current request.
+    public void redirect(Writer out, PrintWriter err) {
+        redirect(new LoxOutput(out), err);
+    }
+
+    private void redirect(LoxOutput out, PrintWriter err) {
+        if (redirected != null) redirected.flush();
+        redirected = out == this.out ? null : out;
+        interpreter.redirect(out);
+        reporter.redirect(err);
+    }
+
+    private LoxOutput output() {
+        return redirected != null ? redirected : out;
+    }
+
+    // Drops every global the scripts defined, clears the error flags and undoes any
+    // redirect, so the runtime can run another script as if it were new.
+    public void reset() {
+        redirect(out, err);
+        reporter.reset();
+        interpreter.globals.resetTo(baseline);
+        interpreter.modules.clear();
+    }
+
+    Environment globals() {
+        return interpreter.globals;
+    }
+
+    public void define(String name, Object value) {
+        interpreter.globals.define(name, value);
+    }
+
+    public ErrorReporter errors() {
+        return reporter;
+    }
+}
@@ -0,0 +1,253 @@
+import javax.script.AbstractScriptEngine;
+import javax.script.Bindings;
+import javax.script.Compilable;
+import javax.script.Invocable;
+import javax.script.ScriptContext;
+import javax.script.ScriptEngineFactory;
+import javax.script.ScriptException;
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.io.Reader;
+import java.io.StringWriter;
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+
+// JSR-223 engine. The ENGINE_SCOPE bindings of a context are the Lox globals a script
+// runs against; compiled scripts are shared and never reparsed. Bindings that aren't
+// LoxBindings are mirrored by Lox globals, kept while the context uses the same Bindings
+// object, and what a script defines or assigns is copied back to them.
+public class LoxScriptEngine extends AbstractScriptEngine implements Compilable, Invocable {
+    private final LoxScriptEngineFactory factory;
+    private final ScriptCache cache = new ScriptCache(64);
+    private Bindings foreign;
+    private LoxBindings mirror;
+    // The names foreign has, as of the last time it was mirrored
+    private Set<String> mirrored = new HashSet<>();
+
+    LoxScriptEngine(LoxScriptEngineFactory factory) {
+        this.factory = factory;
+        context.setBindings(createBindings(), ScriptContext.ENGINE_SCOPE);
+    }
+
+    @Override
+    public Bindings createBindings() {
+        return new LoxBindings();
+    }
+
+    @Override
+    public ScriptEngineFactory getFactory() {
+        return factory;
+    }
+
+    @Override
+    public Object eval(String script, ScriptContext context) throws ScriptException {
+        return execute(compileSource(script), context);
+    }
+
+    @Override
+    public Object eval(Reader reader, ScriptContext context) throws ScriptException {
+        return eval(read(reader), context);
+    }
+
+    @Override
+    public javax.script.CompiledScript compile(String script) throws ScriptException {
+        CompiledScript compiled = compileSource(script);
+        return new javax.script.CompiledScript() {
+            @Override
+            public Object eval(ScriptContext context) throws ScriptException {
+                return execute(compiled, context);
+            }
+
+            @Override
+            public javax.script.ScriptEngine getEngine() {
+                return LoxScriptEngine.this;
+            }
+        };
+    }
+
+    @Override
+    public javax.script.CompiledScript compile(Reader script) throws ScriptException {
+        return compile(read(script));
+    }
+
+    @Override
+    public Object invokeFunction(String name, Object... args) throws ScriptException, NoSuchMethodException {
+        Object function = globals(context).lookUp(name);
+        if (!(function instanceof LoxCallable)) {
+            throw new NoSuchMethodException("No Lox function '" + name + "'.");
+        }
+        return call((LoxCallable) function, args, context);
+    }
+
+    @Override
+    public Object invokeMethod(Object thiz, String name, Object... args) throws ScriptException, NoSuchMethodException {
+        if (!(thiz instanceof LoxInstance instance)) {
+            throw new IllegalArgumentException("Can only invoke methods on Lox instances.");
+        }
+
+        Object method;
+        try {
+            method = instance.get(new Token(TokenType.IDENTIFIER, name, null, 0));
+        } catch (RuntimeError error) {
+            throw new NoSuchMethodException(error.getMessage());
+        }
+        if (!(method instanceof LoxCallable)) {
+            throw new NoSuchMethodException("'" + name + "' is not a method.");
+        }
+        return call((LoxCallable) method, args, context);
+    }
+
+    @Override
+    public <T> T getInterface(Class<T> type) {
+        return proxy(null, type);
+    }
+
+    @Override
+    public <T> T getInterface(Object thiz, Class<T> type) {
+        if (!(thiz instanceof LoxInstance)) {
+            throw new IllegalArgumentException("Can only implement interfaces with Lox instances.");
+        }
+        return proxy(thiz, type);
+    }
+
+    private <T> T proxy(Object thiz, Class<T> type) {
+        if (type == null || !type.isInterface()) {
+            throw new IllegalArgumentException("Expected an interface type.");
+        }
+
+        Object implementation = Proxy.newProxyInstance(type.getClassLoader(), new Class<?>[]{type}, (proxy, method, args) -> {
+            if (method.getDeclaringClass() == Object.class) {
+                return switch (method.getName()) {
+                    case "hashCode" -> System.identityHashCode(proxy);
+                    case "equals" -> proxy == args[0];
+                    default -> "Lox " + type.getSimpleName();
+                };
+            }
+
+            Object[] arguments = args == null ? new Object[0] : args;
+            Object result = thiz == null
+                    ? invokeFunction(method.getName(), arguments)
+                    : invokeMethod(thiz, method.getName(), arguments);
+            return toJava(result, method.getReturnType());
+        });
+        return type.cast(implementation);
+    }
+
+    private CompiledScript compileSource(String source) throws ScriptException {
+        StringWriter errors = new StringWriter();
+        ErrorReporter reporter = new ErrorReporter(new PrintWriter(errors));
+        CompiledScript script = cache.compile(source, reporter);
+        if (script == null) throw new ScriptException(errors.toString().trim());
+        return script;
+    }
+
+    private Object execute(CompiledScript script, ScriptContext context) throws ScriptException {
+        Bindings bindings = context.getBindings(ScriptContext.ENGINE_SCOPE);
+        LoxBindings globals = loxBindings(bindings);
+        Map<String, Object> before = globals != bindings ? globals.globals.values() : null;
+
+        StringWriter errors = new StringWriter();
+        ErrorReporter reporter = new ErrorReporter(new PrintWriter(errors));
+        LoxOutput out = new LoxOutput(context.getWriter());
+        Interpreter interpreter = Interpreter.create(reporter, out, globals.globals);
+        Object value;
+        try {
+            value = interpreter.interpret(script.statements(), script.frameSize());
+        } finally {
+            out.flush();
+        }
+
+        // Only what the script defined or assigned goes back, so the host sees its effects
+        // without getting the natives too
+        if (globals != bindings) {
+            for (Map.Entry<String, Object> global : globals.globals.values().entrySet()) {
+                String name = global.getKey();
+                if (!before.containsKey(name) || before.get(name) != global.getValue()) {
+                    bindings.put(name, global.getValue());
+                    mirrored.add(name);
+                }
+            }
+        }
+        if (reporter.hadRuntimeError()) throw new ScriptException(errors.toString().trim());
+        return value;
+    }
+
+    // The Lox globals for bindings, which are its own if it is a LoxBindings. Foreign
+    // bindings keep their mirror from one eval to the next, brought up to date with what the
+    // host put in or removed since.
+    private LoxBindings loxBindings(Bindings bindings) {
+        if (bindings instanceof LoxBindings loxBindings) return loxBindings;
+
+        if (bindings != foreign) {
+            foreign = bindings;
+            mirror = new LoxBindings();
+            mirrored = new HashSet<>();
+        }
+        for (String name : mirrored) {
+            if (!bindings.containsKey(name)) mirror.remove(name);
+        }
+        for (Map.Entry<String, Object> binding : bindings.entrySet()) {
+            if (!Objects.equals(mirror.get(binding.getKey()), LoxBindings.toLox(binding.getValue()))) {
+                mirror.put(binding.getKey(), binding.getValue());
+            }
+        }
+        mirrored = new HashSet<>(bindings.keySet());
+        return mirror;
+    }
+
+    private Object call(LoxCallable callable, Object[] args, ScriptContext context) throws ScriptException {
+        if (callable.arity() != LoxCallable.VARIADIC && callable.arity() != args.length) {
+            throw new ScriptException("Expected " + callable.arity() + " arguments but got " + args.length + ".");
+        }
+
+        List<Object> arguments = new ArrayList<>(args.length);
+        for (Object arg : args) {
+            arguments.add(LoxBindings.toLox(arg));
+        }
+
+        ErrorReporter reporter = new ErrorReporter(new PrintWriter(context.getErrorWriter(), true));
+        LoxOutput out = new LoxOutput(context.getWriter());
+        Interpreter interpreter = Interpreter.create(reporter, out, globals(context));
+        try {
+            return callable.call(interpreter, arguments);
+        } catch (RuntimeError error) {
+            throw new ScriptException(error.getMessage(), null, error.token == null ? -1 : error.token.line);
+        } finally {
+            out.flush();
+        }
+    }
+
+    private Environment globals(ScriptContext context) {
+        return loxBindings(context.getBindings(ScriptContext.ENGINE_SCOPE)).globals;
+    }
+
+    private static Object toJava(Object value, Class<?> type) {
+        if (value instanceof Double number) {
+            if (type == int.class || type == Integer.class) return number.intValue();
+            if (type == long.class || type == Long.class) return number.longValue();
+            if (type == float.class || type == Float.class) return number.floatValue();
+        }
+        if (value == null && type == void.class) return null;
+        return value;
+    }
+
+    private static String read(Reader reader) throws ScriptException {
+        try (BufferedReader buffered = new BufferedReader(reader)) {
+            StringBuilder source = new StringBuilder();
+            char[] buffer = new char[8192];
+            int count;
+            while ((count = buffered.read(buffer)) != -1) {
+                source.append(buffer, 0, count);
+            }
+            return source.toString();
+        } catch (IOException e) {
+            throw new ScriptException(e);
+        }
+    }
+}
@@ -0,0 +1,111 @@
+import java.lang.reflect.Method;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+
+// A Lox function running on its own thread, created by spawn() and awaited by join().
+public class LoxTask {
+    static final Executor executor = executor();
+
+    private final CountDownLatch done = new CountDownLatch(1);
+    private Object result;
+    private RuntimeError error;
+    private LimitExceeded limitExceeded;
+    // Any other Error, e.g. running out of memory, which join rethrows as it is
+    private Error fatal;
+
+    private LoxTask() {
+    }
+
+    static void defineNatives(Environment globals) {
+        NativeFunction.define(globals, "spawn", 1, (interpreter, arguments) -> {
+            if (!(arguments.get(0) instanceof LoxCallable function) || function.arity() != 0) {
+                throw new RuntimeError(null, "Can only spawn functions that take no arguments.");
+            }
+            return spawn(interpreter, function);
+        });
+        NativeFunction.define(globals, "join", 1, (interpreter, arguments) -> {
+            if (!(arguments.get(0) instanceof LoxTask task)) {
+                throw new RuntimeError(null, "Can only join tasks.");
+            }
+            return task.join(interpreter.limits());
+        });
+    }
+
+    static LoxTask spawn(Interpreter interpreter, LoxCallable function) {
+        LoxTask task = new LoxTask();
+        // The task gets its own frames, sharing only the globals with the spawner
+        Interpreter worker = interpreter.fork();
+        executor.execute(() -> task.run(worker, function));
+        return task;
+    }
+
+    private void run(Interpreter worker, LoxCallable function) {
+        try {
+            result = worker.callBack(function, List.of());
+        } catch (RuntimeError e) {
+            error = e;
+        } catch (LimitExceeded e) {
+            // Passed on to the host by join
+            limitExceeded = e;
+        } catch (RuntimeException | StackOverflowError e) {
+            error = new RuntimeError(null, "Task failed: " + e);
+        } catch (Error e) {
+            fatal = e;
+        } finally {
+            try {
+                // The run that spawned the task may have ended and flushed already
+                worker.flushOutput();
+            } finally {
+                done.countDown();
+            }
+        }
+    }
+
+    // Waits no longer than the joining run's time limit allows.
+    Object join(Interpreter.Limits limits) throws RuntimeError {
+        try {
+            long nanosLeft = limits.nanosLeft();
+            if (nanosLeft == Long.MAX_VALUE) {
+                done.await();
+            } else if (!done.await(nanosLeft, TimeUnit.NANOSECONDS)) {
+                limits.checkTime();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeError(null, "Interrupted while joining a task.");
+        }
+
+        if (fatal != null) throw fatal;
+        if (limitExceeded != null) throw limitExceeded;
+        if (error != null) throw error;
+        return result;
+    }
+
+    @Override
+    public String toString() {
+        return "<task>";
+    }
+
+    // Virtual threads when the JDK provides them (21, or 19 and 20 with --enable-preview),
+    // otherwise a cached pool of daemon platform threads.
+    private static Executor executor() {
+        try {
+            Object builder = Thread.class.getMethod("ofVirtual").invoke(null);
+            Method factory = Class.forName("java.lang.Thread$Builder").getMethod("factory");
+            ThreadFactory threads = (ThreadFactory) factory.invoke(builder);
+            return command -> threads.newThread(command).start();
+        } catch (ReflectiveOperationException | RuntimeException e) {
+            ExecutorService pool = Executors.newCachedThreadPool(command -> {
+                Thread thread = new Thread(command, "lox-task");
+                thread.setDaemon(true);
+                return thread;
+            });
+            return pool;
+        }
+    }
+}
@@ -0,0 +1,103 @@
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.List;
+
+// Keeps compiled scripts on disk in a cache directory, so a script that hasn't changed
+// since it last ran skips the Scanner, Parser and Resolver. Each source file has one cache
+// file there, named after a hash of its path, which is only used if its format version and
+// the hash of the source it was compiled from both match; anything else is compiled from
+// scratch and the file rewritten. Nothing is ever written next to the sources.
+final class LoxcCache {
+    private static final byte[] MAGIC = {'L', 'O', 'X', 'C'};
+    // Bump whenever the AST, Binding or AstWriter's encoding changes
+    static final int VERSION = 4;
+
+    // $XDG_CACHE_HOME/lox, or ~/.cache/lox.
+    static Path defaultDirectory() {
+        String cacheHome = System.getenv("XDG_CACHE_HOME");
+        if (cacheHome != null && !cacheHome.isEmpty()) return Path.of(cacheHome, "lox");
+        return Path.of(System.getProperty("user.home"), ".cache", "lox");
+    }
+
+    static Path cachePath(Path directory, Path source) {
+        return directory.resolve(ScriptCache.hash(source.toAbsolutePath().normalize().toString()) + ".loxc");
+    }
+
+    // Returns null if the source has static errors, which are sent to the reporter. A null
+    // directory turns the cache off.
+    static CompiledScript compile(Path source, String text, ErrorReporter reporter, boolean lazyFunctions, Path directory) {
+        if (directory == null) return CompiledScript.compile(text, reporter, lazyFunctions);
+
+        Path cache = cachePath(directory, source);
+        String hash = ScriptCache.hash(text);
+
+        CompiledScript script = read(cache, hash, lazyFunctions);
+        if (script != null) return script;
+
+        script = CompiledScript.compile(text, reporter, lazyFunctions);
+        if (script != null) write(cache, hash, lazyFunctions, script);
+        return script;
+    }
+
+    private static CompiledScript read(Path cache, String hash, boolean lazyFunctions) {
+        byte[] bytes;
+        try {
+            bytes = Files.readAllBytes(cache);
+        } catch (IOException e) {
+            return null;
+        }
+
+        try {
+            ByteBuffer in = ByteBuffer.wrap(bytes);
+            for (byte b : MAGIC) {
+                if (in.get() != b) return null;
+            }
+            AstReader reader = new AstReader(in);
+            if (reader.readInt() != VERSION || !hash.equals(reader.readString())) return null;
+            // An eagerly compiled file would do for a lazy run, but not the other way around,
+            // since a lazy one hasn't checked its function bodies
+            if ((reader.readInt() == 1) != lazyFunctions) return null;
+
+            int frameSize = reader.readInt();
+            List<Stmt> statements = reader.readStatements(Stmt.class);
+            if (!reader.atEnd()) return null;
+            return new CompiledScript(statements, frameSize);
+        } catch (RuntimeException e) {
+            // Truncated or corrupt, so it gets compiled and rewritten
+            return null;
+        }
+    }
+
+    private static void write(Path cache, String hash, boolean lazyFunctions, CompiledScript script) {
+        AstWriter writer = new AstWriter();
+        writer.writeInt(VERSION);
+        writer.writeString(hash);
+        writer.writeInt(lazyFunctions ? 1 : 0);
+        writer.writeInt(script.frameSize());
+        writer.writeStatements(script.statements());
+
+        // Written to a temporary file and moved into place, so a script starting at the
+        // same time never sees half a cache file
+        Path temp = null;
+        try {
+            Files.createDirectories(cache.getParent());
+            temp = Files.createTempFile(cache.getParent(), cache.getFileName().toString(), ".tmp");
+            try (OutputStream out = Files.newOutputStream(temp)) {
+                out.write(MAGIC);
+                out.write(writer.toByteArray());
+            }
+            Files.move(temp, cache, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            // The cache only saves time, so a directory that can't be created or written just
+            // means compiling every run
+            try {
+                if (temp != null) Files.deleteIfExists(temp);
+            } catch (IOException ignored) {
+            }
+        }
+    }
+}
@@ -0,0 +1,41 @@
+import java.util.List;
+
+// A LoxCallable implemented in Java.
+public class NativeFunction implements LoxCallable {
+    interface Body {
+        Object call(Interpreter interpreter, List<Object> arguments) throws RuntimeError;
+    }
+
+    private final String name;
+    private final int arity;
+    private final Body body;
+
+    NativeFunction(String name, int arity, Body body) {
+        this.name = name;
+        this.arity = arity;
+        this.body = body;
+    }
+
+    static void define(Environment globals, String name, int arity, Body body) {
+        globals.define(name, new NativeFunction(name, arity, body));
+    }
+
+    @Override
+    public Object call(Interpreter interpreter, List<Object> arguments) throws RuntimeError {
+        return body.call(interpreter, arguments);
+    }
+
+    @Override
+    public int arity() {
+        return arity;
+    }
+
+    String name() {
+        return name;
+    }
+
+    @Override
+    public String toString() {
+        return "<native fn " + name + ">";
+    }
+}
@@ -0,0 +1,92 @@
+// Bulk operations on numeric arrays. The Vector API implementation is used when the
+// jdk.incubator.vector module is available (run with --add-modules jdk.incubator.vector),
+// otherwise plain loops, which the JIT may still auto-vectorize.
+abstract class NumericKernels {
+    static final NumericKernels instance = select();
+
+    abstract void add(double[] a, double[] b, double[] result, int length);
+
+    abstract void multiply(double[] a, double[] b, double[] result, int length);
+
+    // result = alpha * x + y
+    abstract void scaledAdd(double alpha, double[] x, double[] y, double[] result, int length);
+
+    abstract double dot(double[] a, double[] b, int length);
+
+    abstract double sum(double[] a, int length);
+
+    abstract double min(double[] a, int length);
+
+    abstract double max(double[] a, int length);
+
+    private static NumericKernels select() {
+        try {
+            return (NumericKernels) Class.forName("VectorKernels").getDeclaredConstructor().newInstance();
+        } catch (ReflectiveOperationException | LinkageError e) {
+            return new ScalarKernels();
+        }
+    }
+
+    static void defineNatives(Environment globals) {
+        NativeFunction.define(globals, "vadd", 2, (interpreter, arguments) -> {
+            LoxArray a = numbers(arguments.get(0));
+            LoxArray b = sameLength(a, numbers(arguments.get(1)));
+            interpreter.allocate(null, AllocationBudget.array(a.length(), AllocationBudget.NUMBER));
+            double[] result = new double[a.length()];
+            instance.add(a.numbers(), b.numbers(), result, result.length);
+            return LoxArray.of(result);
+        });
+        NativeFunction.define(globals, "vmul", 2, (interpreter, arguments) -> {
+            LoxArray a = numbers(arguments.get(0));
+            LoxArray b = sameLength(a, numbers(arguments.get(1)));
+            interpreter.allocate(null, AllocationBudget.array(a.length(), AllocationBudget.NUMBER));
+            double[] result = new double[a.length()];
+            instance.multiply(a.numbers(), b.numbers(), result, result.length);
+            return LoxArray.of(result);
+        });
+        // axpy(alpha, x, y) returns alpha * x + y
+        NativeFunction.define(globals, "axpy", 3, (interpreter, arguments) -> {
+            if (!(arguments.get(0) instanceof Double alpha)) {
+                throw new RuntimeError(null, "Scale factor must be a number.");
+            }
+            LoxArray x = numbers(arguments.get(1));
+            LoxArray y = sameLength(x, numbers(arguments.get(2)));
+            interpreter.allocate(null, AllocationBudget.array(x.length(), AllocationBudget.NUMBER));
+            double[] result = new double[x.length()];
+            instance.scaledAdd(alpha, x.numbers(), y.numbers(), result, result.length);
+            return LoxArray.of(result);
+        });
+        NativeFunction.define(globals, "dot", 2, (interpreter, arguments) -> {
+            LoxArray a = numbers(arguments.get(0));
+            LoxArray b = sameLength(a, numbers(arguments.get(1)));
+            return instance.dot(a.numbers(), b.numbers(), a.length());
+        });
+        NativeFunction.define(globals, "sum", 1, (interpreter, arguments) -> {
+            LoxArray a = numbers(arguments.get(0));
+            return instance.sum(a.numbers(), a.length());
+        });
+        NativeFunction.define(globals, "min", 1, (interpreter, arguments) -> {
+            LoxArray a = nonEmpty(numbers(arguments.get(0)));
+            return instance.min(a.numbers(), a.length());
+        });
+        NativeFunction.define(globals, "max", 1, (interpreter, arguments) -> {
+            LoxArray a = nonEmpty(numbers(arguments.get(0)));
+            return instance.max(a.numbers(), a.length());
+        });
+    }
+
+    private static LoxArray numbers(Object value) throws RuntimeError {
+        if (value instanceof LoxArray array && array.numbers() != null) return array;
+        throw new RuntimeError(null, "Expected an array of numbers.");
+    }
+
+    private static LoxArray sameLength(LoxArray a, LoxArray b) throws RuntimeError {
+        if (a.length() == b.length()) return b;
+        throw new RuntimeError(null, "Arrays must have the same length, but got " + a.length() + " and " + b.length() + ".");
+    }
+
+    private static LoxArray nonEmpty(LoxArray a) throws RuntimeError {
+        if (a.length() > 0) return a;
+        throw new RuntimeError(null, "Array must not be empty.");
+    }
+}
@@ -0,0 +1,111 @@
+import java.io.PrintWriter;
+import java.io.Writer;
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+
+// Parses large token streams on several threads. The tokens are cut into segments at top
+// level statement boundaries, the segments are parsed on the common fork-join pool, and
+// their statements are joined back in source order. A Parser's only state is its position,
+// so this gives the same AST as one sequential parse. If any segment has an error, the
+// whole stream is parsed again sequentially, so errors are reported exactly as they would
+// be without splitting.
+final class ParallelParser {
+    // Smaller sources parse quickly enough on one thread
+    static final int THRESHOLD = 1 << 16;
+    private static final int SEGMENT_SIZE = 1 << 14;
+
+    static List<Stmt> parse(List<Token> tokens, ErrorReporter reporter, boolean lazyFunctions) {
+        boolean worthSplitting = tokens.size() >= THRESHOLD && ForkJoinPool.getCommonPoolParallelism() > 1;
+        List<Integer> boundaries = worthSplitting ? boundaries(tokens) : null;
+        if (boundaries == null || boundaries.size() < 3) {
+            return new Parser(tokens, reporter, lazyFunctions).parse();
+        }
+
+        List<ForkJoinTask<List<Stmt>>> segments = new ArrayList<>();
+        for (int i = 0; i + 1 < boundaries.size(); i++) {
+            Segment segment = new Segment(tokens, boundaries.get(i), boundaries.get(i + 1));
+            segments.add(ForkJoinPool.commonPool().submit(() -> parseSegment(segment, lazyFunctions)));
+        }
+
+        List<Stmt> statements = new ArrayList<>();
+        for (ForkJoinTask<List<Stmt>> segment : segments) {
+            List<Stmt> parsed = segment.join();
+            if (parsed == null) {
+                return new Parser(tokens, reporter, lazyFunctions).parse();
+            }
+            statements.addAll(parsed);
+        }
+        return statements;
+    }
+
+    // Returns null if the segment has errors, which are dropped for the sequential parse to report.
+    private static List<Stmt> parseSegment(Segment segment, boolean lazyFunctions) {
+        ErrorReporter errors = new ErrorReporter(new PrintWriter(Writer.nullWriter()));
+        List<Stmt> statements = new Parser(segment, errors, lazyFunctions).parse();
+        return errors.hadError() ? null : statements;
+    }
+
+    // Indexes where segments start, beginning with 0 and ending with the index of EOF.
+    // A statement ends at depth 0 with a ';' or with the '}' of a block, class or function
+    // body, unless an 'else' follows. Returns null if the brackets don't balance.
+    private static List<Integer> boundaries(List<Token> tokens) {
+        List<Integer> boundaries = new ArrayList<>();
+        boundaries.add(0);
+
+        int end = tokens.size() - 1;
+        int depth = 0;
+        for (int i = 0; i < end; i++) {
+            switch (tokens.get(i).type) {
+                case LEFT_PAREN, LEFT_BRACE, LEFT_BRACKET -> depth++;
+                case RIGHT_PAREN, RIGHT_BRACKET -> depth--;
+                case RIGHT_BRACE -> {
+                    if (--depth == 0) split(tokens, boundaries, i + 1);
+                }
+                case SEMICOLON -> {
+                    if (depth == 0) split(tokens, boundaries, i + 1);
+                }
+                default -> {
+                }
+            }
+            if (depth < 0) return null;
+        }
+        if (depth != 0) return null;
+
+        if (boundaries.get(boundaries.size() - 1) < end) boundaries.add(end);
+        return boundaries;
+    }
+
+    private static void split(List<Token> tokens, List<Integer> boundaries, int next) {
+        if (next - boundaries.get(boundaries.size() - 1) < SEGMENT_SIZE) return;
+        if (tokens.get(next).type == TokenType.ELSE) return;
+        boundaries.add(next);
+    }
+
+    // A run of tokens, followed by an EOF so a Parser stops at its end.
+    private static class Segment extends AbstractList<Token> {
+        private final List<Token> tokens;
+        private final int start;
+        private final int size;
+        private final Token eof;
+
+        Segment(List<Token> tokens, int start, int end) {
+            this.tokens = tokens;
+            this.start = start;
+            this.size = end - start + 1;
+            this.eof = new Token(TokenType.EOF, "", null, tokens.get(end - 1).line);
+        }
+
+        @Override
+        public Token get(int index) {
+            return index == size - 1 ? eof : tokens.get(start + index);
+        }
+
+        @Override
+        public int size() {
+            return size;
+        }
+    }
+}
@@ -5,26 +5,40 @@ import java.util.List;
 public class Parser {
     private static class ParseError extends RuntimeException {}
     private final List<Token> tokens;
+    private final ErrorReporter reporter;
+    // Whether top level functions get a LazyBody instead of being parsed
+    private final boolean lazyFunctions;
     private int current = 0;
 
-    Parser(List<Token> tokens) {
+    Parser(List<Token> tokens, ErrorReporter reporter) {
+        this(tokens, reporter, false);
+    }
+
+    Parser(List<Token> tokens, ErrorReporter reporter, boolean lazyFunctions) {
         this.tokens = tokens;
+        this.reporter = reporter;
+        this.lazyFunctions = lazyFunctions;
     }
 
     List<Stmt> parse() {
         List<Stmt> statements = new ArrayList<>();
         while (!isAtEnd()) {
-            statements.add(declaration());
+            statements.add(declaration(lazyFunctions));
         }
 
         return statements;
     }
 
     private Stmt declaration() {
+        return declaration(false);
+    }
+
+    private Stmt declaration(boolean lazy) {
         try {
-            if (match(TokenType.CLASS)) return classDeclaration();
-            if (match(TokenType.FUN)) return function("function");
+            if (match(TokenType.CLASS)) return classDeclaration(lazy);
+            if (match(TokenType.FUN)) return function("function", lazy);
             if (match(TokenType.VAR)) return varDeclaration();
+            if (match(TokenType.IMPORT)) return importDeclaration();
             return statement();
         } catch (ParseError error) {
             synchronise();
@@ -32,7 +46,7 @@ public class Parser {
         }
     }
 
-    private Stmt classDeclaration() {
+    private Stmt classDeclaration(boolean lazy) {
         Token name = consume(TokenType.IDENTIFIER, "Expect class name.");
         Expr.Variable superclass = null;
         if (match(TokenType.LESS)) {
@@ -44,7 +58,8 @@ public class Parser {
 
         List<Stmt.Function> methods = new ArrayList<>();
         while (!check(TokenType.RIGHT_BRACE) && !isAtEnd()) {
-            methods.add(function("method"));
+            // Methods of a subclass capture 'super', so they have to be resolved with the class
+            methods.add(function("method", lazy && superclass == null));
         }
 
         consume(TokenType.RIGHT_BRACE, "Expect '}' after class body.");
@@ -52,7 +67,7 @@ public class Parser {
         return new Stmt.Class(name, superclass, methods);
     }
 
-    private Stmt.Function function(String kind) {
+    private Stmt.Function function(String kind, boolean lazy) {
         Token name = consume(TokenType.IDENTIFIER, "Expect " + kind + " name.");
 
         // Parameters
@@ -70,10 +85,32 @@ public class Parser {
 
         // Body
         consume(TokenType.LEFT_BRACE, "Expect '{' before " + kind + " body");
+        if (lazy) {
+            Stmt.Function function = new Stmt.Function(name, parameters, new ArrayList<>());
+            function.lazy = skipBody(kind.equals("method"));
+            return function;
+        }
         List<Stmt> body = block();
         return new Stmt.Function(name, parameters, body);
     }
 
+    // Steps over a function body, checking only that its braces match.
+    private LazyBody skipBody(boolean method) {
+        int start = current;
+        int depth = 1;
+        while (!isAtEnd()) {
+            TokenType type = advance().type;
+            if (type == TokenType.LEFT_BRACE) {
+                depth++;
+            } else if (type == TokenType.RIGHT_BRACE && --depth == 0) {
+                List<Token> body = new ArrayList<>(tokens.subList(start, current - 1));
+                body.add(new Token(TokenType.EOF, "", null, previous().line));
+                return new LazyBody(body, method);
+            }
+        }
+        throw error(peek(), "Expect '}' after block.");
+    }
+
     private Stmt varDeclaration() {
         Token name = consume(TokenType.IDENTIFIER, "Expect variable name.");
 
@@ -86,6 +123,13 @@ public class Parser {
         return new Stmt.Var(name, initalizer);
     }
 
+    private Stmt importDeclaration() {
+        Token keyword = previous();
+        Token path = consume(TokenType.STRING, "Expect module path after 'import'.");
+        consume(TokenType.SEMICOLON, "Expect ';' after import.");
+        return new Stmt.Import(keyword, path);
+    }
+
     private Stmt statement() {
         if (match(TokenType.FOR)) return forStatement();
         if (match(TokenType.IF)) return ifStatement();
@@ -108,6 +152,7 @@ public class Parser {
     }
 
     private Stmt forStatement() {
+        Token keyword = previous();
         consume(TokenType.LEFT_PAREN, "Expect '(' after 'for'.");
 
         Stmt initializer;
@@ -139,7 +184,7 @@ public class Parser {
         }
 
         if (condition == null) condition = new Expr.Literal(true);
-        body = new Stmt.While(condition, body);
+        body = new Stmt.While(keyword, condition, body);
 
         if (initializer != null) {
             body = new Stmt.Block(Arrays.asList(initializer, body));
@@ -149,12 +194,13 @@ public class Parser {
     }
 
     private Stmt whileStatement() {
+        Token keyword = previous();
         consume(TokenType.LEFT_PAREN, "Expect '(' after 'while'.");
         Expr condition = expression();
         consume(TokenType.RIGHT_PAREN, "Expect ')' after condition.");
         Stmt body = statement();
 
-        return new Stmt.While(condition, body);
+        return new Stmt.While(keyword, condition, body);
     }
 
     private Stmt ifStatement() {
@@ -209,6 +255,8 @@ public class Parser {
                 return new Expr.Assign(name, value);
             } else if (expr instanceof Expr.Get get) {
                 return new Expr.Set(get.object, get.name, value);
+            } else if (expr instanceof Expr.Index index) {
+                return new Expr.IndexSet(index.object, index.bracket, index.index, value);
             }
 
             error(equals, "Invalid assignment target.");
@@ -299,6 +347,10 @@ public class Parser {
             } else if (match(TokenType.DOT)) {
                 Token name = consume(TokenType.IDENTIFIER, "Expect property name after '.'.");
                 expr = new Expr.Get(expr, name);
+            } else if (match(TokenType.LEFT_BRACKET)) {
+                Expr index = expression();
+                Token bracket = consume(TokenType.RIGHT_BRACKET, "Expect ']' after index.");
+                expr = new Expr.Index(expr, bracket, index);
             } else {
                 break;
             }
@@ -349,6 +401,18 @@ public class Parser {
             return new Expr.Grouping(expr);
         }
 
+        if (match(TokenType.LEFT_BRACKET)) {
+            Token bracket = previous();
+            List<Expr> elements = new ArrayList<>();
+            if (!check(TokenType.RIGHT_BRACKET)) {
+                do {
+                    elements.add(expression());
+                } while (match(TokenType.COMMA));
+            }
+            consume(TokenType.RIGHT_BRACKET, "Expect ']' after array elements.");
+            return new Expr.ArrayLiteral(bracket, elements);
+        }
+
 
         throw error(peek(), "Expect expression.");
     }
@@ -360,7 +424,7 @@ public class Parser {
     }
 
     private ParseError error(Token token, String message) {
-        Lox.error(token, message);
+        reporter.error(token, message);
         return new ParseError();
     }
 
@@ -370,7 +434,7 @@ public class Parser {
             if (previous().type == TokenType.SEMICOLON) return;
 
             switch (peek().type) {
-                case CLASS: case FOR: case FUN: case IF: case PRINT: case RETURN: case VAR: case WHILE:
+                case CLASS: case FOR: case FUN: case IF: case IMPORT: case PRINT: case RETURN: case VAR: case WHILE:
                     return;
             }
 
@@ -1,3 +1,4 @@
+import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
@@ -17,13 +18,62 @@ enum ClassType {
 }
 
 public class Resolver implements Expr.Visitor<Void>, Stmt.Visitor<Void> {
-    private final Stack<Map<String, Boolean>> scopes = new Stack<>();
+    private static class Local {
+        final Binding binding;
+        boolean defined = false;
+
+        Local(Binding binding) {
+            this.binding = binding;
+        }
+    }
+
+    // The locals, upvalues and frame layout of the function currently being resolved.
+    private static class FunctionScope {
+        final FunctionScope enclosing;
+        final Stack<Map<String, Local>> scopes = new Stack<>();
+        final List<Binding> captures = new ArrayList<>();
+        final List<Binding> upvalues = new ArrayList<>();
+        int slotCount = 0;
+        int frameSize = 0;
+
+        FunctionScope(FunctionScope enclosing) {
+            this.enclosing = enclosing;
+        }
+
+        Binding allocate() {
+            Binding binding = new Binding(Binding.Kind.LOCAL, slotCount++);
+            frameSize = Math.max(frameSize, slotCount);
+            return binding;
+        }
+
+        Binding findLocal(String name) {
+            for (int i = scopes.size() - 1; i >= 0; i--) {
+                Local local = scopes.get(i).get(name);
+                if (local != null) return local.binding;
+            }
+            return null;
+        }
+
+        Binding addUpvalue(Binding captured) {
+            for (int i = 0; i < captures.size(); i++) {
+                if (captures.get(i) == captured) return upvalues.get(i);
+            }
+
+            Binding upvalue = new Binding(Binding.Kind.UPVALUE, captures.size());
+            captures.add(captured);
+            upvalues.add(upvalue);
+            return upvalue;
+        }
+    }
+
+    private FunctionScope currentScope = new FunctionScope(null);
     private FunctionType currentFunction = FunctionType.NONE;
     private ClassType currentClass = ClassType.NONE;
-    private final Interpreter interpreter;
+    private final ErrorReporter reporter;
+    private int nodes = 0;
 
-    Resolver(Interpreter interpreter) {
-        this.interpreter = interpreter;
+    Resolver(ErrorReporter reporter) {
+        this.reporter = reporter;
     }
 
     void resolve(List<Stmt> statements) {
@@ -31,71 +81,146 @@ public class Resolver implements Expr.Visitor<Void>, Stmt.Visitor<Void> {
             try {
                 resolve(statement);
             } catch (RuntimeError e) {
-                Lox.runtimeError(e);
+                reporter.runtimeError(e);
             }
         }
     }
 
+    // Number of slots top level blocks need in the script's frame.
+    int frameSize() {
+        return currentScope.frameSize;
+    }
+
+    // Statements and expressions resolved so far. Lazy function bodies aren't resolved, or
+    // counted, until their first call.
+    int nodeCount() {
+        return nodes;
+    }
+
     private void resolve(Stmt statement) throws RuntimeError {
+        nodes++;
         statement.accept(this);
     }
 
     private void resolve(Expr expr) throws RuntimeError {
+        nodes++;
         expr.accept(this);
     }
 
-    private void resolveLocal(Expr expr, Token name) {
-        for (int i = scopes.size() - 1; i >= 0; i--) {
-            if (scopes.get(i).containsKey(name.lexeme)) {
-                interpreter.resolve(expr, scopes.size() - 1 - i);
-                return;
-            }
+    private Binding resolveLocal(String name) {
+        Binding local = currentScope.findLocal(name);
+        if (local != null) return local;
+
+        Binding upvalue = resolveUpvalue(currentScope, name);
+        if (upvalue != null) return upvalue;
+
+        return Binding.global(name);
+    }
+
+    private Binding resolveUpvalue(FunctionScope scope, String name) {
+        if (scope.enclosing == null) return null;
+
+        Binding local = scope.enclosing.findLocal(name);
+        if (local != null) {
+            local.captured = true;
+            return scope.addUpvalue(local);
         }
+
+        Binding upvalue = resolveUpvalue(scope.enclosing, name);
+        if (upvalue != null) return scope.addUpvalue(upvalue);
+
+        return null;
+    }
+
+    // Resolves the body of a lazily parsed function on its first call. Such a function was
+    // declared at the top level, so anything that isn't one of its own locals is a global.
+    void resolveLazy(Stmt.Function function, boolean method) throws RuntimeError {
+        currentClass = method ? ClassType.CLASS : ClassType.NONE;
+
+        FunctionType type = FunctionType.FUNCTION;
+        if (method) {
+            type = function.name.lexeme.equals("init") ? FunctionType.INITIALIZER : FunctionType.METHOD;
+        }
+        resolveBody(function, type);
     }
 
     private void resolveFunction(Stmt.Function function, FunctionType type) throws RuntimeError {
+        if (function.lazy != null) {
+            // Nothing to capture at the top level; the rest waits for LazyBody
+            function.captures = new Binding[0];
+            return;
+        }
+        resolveBody(function, type);
+    }
+
+    private void resolveBody(Stmt.Function function, FunctionType type) throws RuntimeError {
         FunctionType enclosingFunction = currentFunction;
+        FunctionScope enclosingScope = currentScope;
         currentFunction = type;
+        currentScope = new FunctionScope(enclosingScope);
 
         beginScope();
-        for (Token param : function.params) {
-            declare(param);
+        if (type == FunctionType.METHOD || type == FunctionType.INITIALIZER) {
+            function.receiver = declareSynthetic("this");
+        }
+        Binding[] parameters = new Binding[function.params.size()];
+        for (int i = 0; i < parameters.length; i++) {
+            Token param = function.params.get(i);
+            parameters[i] = declare(param);
             define(param);
         }
         resolve(function.body);
         endScope();
+
+        function.parameters = parameters;
+        function.captures = currentScope.captures.toArray(new Binding[0]);
+        function.frameSize = currentScope.frameSize;
+
+        currentScope = enclosingScope;
         currentFunction = enclosingFunction;
     }
 
 
     private void beginScope() {
-        scopes.push(new HashMap<>());
+        currentScope.scopes.push(new HashMap<>());
     }
 
     private void endScope() {
-        scopes.pop();
+        // Slots are handed out in declaration order, so a closed scope's slots can be reused
+        currentScope.slotCount -= currentScope.scopes.pop().size();
     }
 
-    private void declare(Token name) {
-        if (scopes.isEmpty()) return;
+    private Binding declare(Token name) {
+        if (currentScope.scopes.isEmpty()) return Binding.global(name.lexeme);
 
-        Map<String, Boolean> scope = scopes.peek();
+        Map<String, Local> scope = currentScope.scopes.peek();
         if (scope.containsKey(name.lexeme)) {
-            Lox.error(name, "Already a variable with this name in this scope.");
+            reporter.error(name, "Already a variable with this name in this scope.");
+            return scope.get(name.lexeme).binding;
         }
-        scope.put(name.lexeme, false);
+
+        Binding binding = currentScope.allocate();
+        scope.put(name.lexeme, new Local(binding));
+        return binding;
     }
 
     private void define(Token name) {
-        if (scopes.isEmpty()) return;
-        scopes.peek().put(name.lexeme, true);
+        if (currentScope.scopes.isEmpty()) return;
+        currentScope.scopes.peek().get(name.lexeme).defined = true;
+    }
+
+    private Binding declareSynthetic(String name) {
+        Local local = new Local(currentScope.allocate());
+        local.defined = true;
+        currentScope.scopes.peek().put(name, local);
+        return local.binding;
     }
 
 
     @Override
     public Void visitAssignExpr(Expr.Assign expr) throws RuntimeError {
         resolve(expr.value);
-        resolveLocal(expr, expr.name);
+        expr.binding = resolveLocal(expr.name.lexeme);
         return null;
     }
 
@@ -133,23 +258,24 @@ public class Resolver implements Expr.Visitor<Void>, Stmt.Visitor<Void> {
     @Override
     public Void visitSuperExpr(Expr.Super expr) throws RuntimeError {
         if (currentClass == ClassType.NONE) {
-            Lox.error(expr.keyword, "Can't use 'super' outside of a class.");
+            reporter.error(expr.keyword, "Can't use 'super' outside of a class.");
         } else if (currentClass != ClassType.SUBCLASS) {
-            Lox.error(expr.keyword, "Can't use 'super' in class with no superclass.");
+            reporter.error(expr.keyword, "Can't use 'super' in class with no superclass.");
         }
 
-        resolveLocal(expr, expr.keyword);
+        expr.binding = resolveLocal("super");
+        expr.thisBinding = resolveLocal("this");
         return null;
     }
 
     @Override
     public Void visitThisExpr(Expr.This expr) throws RuntimeError {
         if (currentClass == ClassType.NONE) {
-            Lox.error(expr.keyword, "Can't use 'this' outside of a class.");
+            reporter.error(expr.keyword, "Can't use 'this' outside of a class.");
             return null;
         }
 
-        resolveLocal(expr, expr.keyword);
+        expr.binding = resolveLocal("this");
         return null;
     }
 
@@ -173,10 +299,14 @@ public class Resolver implements Expr.Visitor<Void>, Stmt.Visitor<Void> {
 
     @Override
     public Void visitVariableExpr(Expr.Variable expr) throws RuntimeError {
-        if (!scopes.isEmpty() && scopes.peek().get(expr.name.lexeme) == Boolean.FALSE) {
-            Lox.error(expr.name, "Can't read local variable in its own initializer.");
+        Stack<Map<String, Local>> scopes = currentScope.scopes;
+        if (!scopes.isEmpty()) {
+            Local local = scopes.peek().get(expr.name.lexeme);
+            if (local != null && !local.defined) {
+                reporter.error(expr.name, "Can't read local variable in its own initializer.");
+            }
         }
-        resolveLocal(expr, expr.name);
+        expr.binding = resolveLocal(expr.name.lexeme);
         return null;
     }
 
@@ -186,6 +316,29 @@ public class Resolver implements Expr.Visitor<Void>, Stmt.Visitor<Void> {
         return null;
     }
 
+    @Override
+    public Void visitArrayLiteralExpr(Expr.ArrayLiteral expr) throws RuntimeError {
+        for (Expr element : expr.elements) {
+            resolve(element);
+        }
+        return null;
+    }
+
+    @Override
+    public Void visitIndexExpr(Expr.Index expr) throws RuntimeError {
+        resolve(expr.object);
+        resolve(expr.index);
+        return null;
+    }
+
+    @Override
+    public Void visitIndexSetExpr(Expr.IndexSet expr) throws RuntimeError {
+        resolve(expr.value);
+        resolve(expr.object);
+        resolve(expr.index);
+        return null;
+    }
+
     @Override
     public Void visitBlockStmt(Stmt.Block stmt) throws RuntimeError {
         beginScope();
@@ -199,11 +352,11 @@ public class Resolver implements Expr.Visitor<Void>, Stmt.Visitor<Void> {
         ClassType enclosingClass = currentClass;
         currentClass = ClassType.CLASS;
 
-        declare(stmt.name);
+        stmt.binding = declare(stmt.name);
         define(stmt.name);
 
         if (stmt.superclass != null && stmt.name.lexeme.equals(stmt.superclass.name.lexeme)) {
-            Lox.error(stmt.superclass.name, "A class cannot inherit from itself.");
+            reporter.error(stmt.superclass.name, "A class cannot inherit from itself.");
         }
 
         if (stmt.superclass != null) {
@@ -213,13 +366,11 @@ public class Resolver implements Expr.Visitor<Void>, Stmt.Visitor<Void> {
 
         if (stmt.superclass != null) {
             beginScope();
-            scopes.peek().put("super", true);
+            stmt.superBinding = declareSynthetic("super");
         }
 
-        beginScope();
-        scopes.peek().put("this", true);
-
         for (Stmt.Function method: stmt.methods) {
+            nodes++;
             FunctionType declaration = FunctionType.METHOD;
             if (method.name.lexeme.equals("init")) {
                 declaration = FunctionType.INITIALIZER;
@@ -227,8 +378,6 @@ public class Resolver implements Expr.Visitor<Void>, Stmt.Visitor<Void> {
             resolveFunction(method, declaration);
         }
 
-        endScope();
-
         if (stmt.superclass != null) endScope();
 
         currentClass = enclosingClass;
@@ -251,7 +400,7 @@ public class Resolver implements Expr.Visitor<Void>, Stmt.Visitor<Void> {
 
     @Override
     public Void visitFunctionStmt(Stmt.Function stmt) throws RuntimeError {
-        declare(stmt.name);
+        stmt.binding = declare(stmt.name);
         define(stmt.name);
         resolveFunction(stmt, FunctionType.FUNCTION);
         return null;
@@ -260,12 +409,12 @@ public class Resolver implements Expr.Visitor<Void>, Stmt.Visitor<Void> {
     @Override
     public Void visitReturnStmt(Stmt.Return stmt) throws RuntimeError {
         if (currentFunction == FunctionType.NONE) {
-            Lox.error(stmt.keyword, "Can't return from top level code.");
+            reporter.error(stmt.keyword, "Can't return from top level code.");
         }
 
         if (stmt.value != null) {
             if (currentFunction == FunctionType.INITIALIZER) {
-                Lox.error(stmt.keyword, "Can't return a value from an initializer.");
+                reporter.error(stmt.keyword, "Can't return a value from an initializer.");
             }
             resolve(stmt.value);
         }
@@ -274,7 +423,7 @@ public class Resolver implements Expr.Visitor<Void>, Stmt.Visitor<Void> {
 
     @Override
     public Void visitVarStmt(Stmt.Var stmt) throws RuntimeError {
-        declare(stmt.name);
+        stmt.binding = declare(stmt.name);
         if (stmt.initializer != null) {
             resolve(stmt.initializer);
         }
@@ -294,4 +443,12 @@ public class Resolver implements Expr.Visitor<Void>, Stmt.Visitor<Void> {
         resolve(stmt.body);
         return null;
     }
+
+    @Override
+    public Void visitImportStmt(Stmt.Import stmt) {
+        if (currentFunction != FunctionType.NONE || !currentScope.scopes.isEmpty()) {
+            reporter.error(stmt.keyword, "Can only import at the top level.");
+        }
+        return null;
+    }
 }
@@ -0,0 +1,58 @@
+class ScalarKernels extends NumericKernels {
+    @Override
+    void add(double[] a, double[] b, double[] result, int length) {
+        for (int i = 0; i < length; i++) {
+            result[i] = a[i] + b[i];
+        }
+    }
+
+    @Override
+    void multiply(double[] a, double[] b, double[] result, int length) {
+        for (int i = 0; i < length; i++) {
+            result[i] = a[i] * b[i];
+        }
+    }
+
+    @Override
+    void scaledAdd(double alpha, double[] x, double[] y, double[] result, int length) {
+        for (int i = 0; i < length; i++) {
+            result[i] = alpha * x[i] + y[i];
+        }
+    }
+
+    @Override
+    double dot(double[] a, double[] b, int length) {
+        double sum = 0;
+        for (int i = 0; i < length; i++) {
+            sum += a[i] * b[i];
+        }
+        return sum;
+    }
+
+    @Override
+    double sum(double[] a, int length) {
+        double sum = 0;
+        for (int i = 0; i < length; i++) {
+            sum += a[i];
+        }
+        return sum;
+    }
+
+    @Override
+    double min(double[] a, int length) {
+        double min = a[0];
+        for (int i = 1; i < length; i++) {
+            min = Math.min(min, a[i]);
+        }
+        return min;
+    }
+
+    @Override
+    double max(double[] a, int length) {
+        double max = a[0];
+        for (int i = 1; i < length; i++) {
+            max = Math.max(max, a[i]);
+        }
+        return max;
+    }
+}
@@ -5,10 +5,11 @@ import java.util.Map;
 
 public class Scanner {
     private final String source;
+    private final ErrorReporter reporter;
     private final List<Token> tokens = new ArrayList<>();
-    private int start = 0;
-    private int current = 0;
-    private int line = 1;
+    private int start;
+    private int current;
+    private int line;
 
     private static final Map<String, TokenType> keywords;
 
@@ -21,6 +22,7 @@ public class Scanner {
         keywords.put("for", TokenType.FOR);
         keywords.put("fun", TokenType.FUN);
         keywords.put("if", TokenType.IF);
+        keywords.put("import", TokenType.IMPORT);
         keywords.put("nil", TokenType.NIL);
         keywords.put("or", TokenType.OR);
         keywords.put("print", TokenType.PRINT);
@@ -32,8 +34,17 @@ public class Scanner {
         keywords.put("while", TokenType.WHILE);
     }
 
-    Scanner(String source) {
+    Scanner(String source, ErrorReporter reporter) {
+        this(source, 0, 1, reporter);
+    }
+
+    // Starts scanning partway into the source, at an offset that lies on the given line.
+    Scanner(String source, int offset, int line, ErrorReporter reporter) {
         this.source = source;
+        this.reporter = reporter;
+        this.start = offset;
+        this.current = offset;
+        this.line = line;
     }
 
     List<Token> scanTokens() {
@@ -47,6 +58,24 @@ public class Scanner {
         return tokens;
     }
 
+    // Scans one more token, or returns null at the end of the source.
+    Token nextToken() {
+        int scanned = tokens.size();
+        while (tokens.size() == scanned && !isAtEnd()) {
+            start = current;
+            scanToken();
+        }
+        return tokens.size() > scanned ? tokens.get(scanned) : null;
+    }
+
+    int offset() {
+        return current;
+    }
+
+    int line() {
+        return line;
+    }
+
     private void scanToken() {
         char c = advance();
         switch (c) {
@@ -54,6 +83,8 @@ public class Scanner {
             case ')' -> addToken(TokenType.RIGHT_PAREN);
             case '{' -> addToken(TokenType.LEFT_BRACE);
             case '}' -> addToken(TokenType.RIGHT_BRACE);
+            case '[' -> addToken(TokenType.LEFT_BRACKET);
+            case ']' -> addToken(TokenType.RIGHT_BRACKET);
             case ',' -> addToken(TokenType.COMMA);
             case '.' -> addToken(TokenType.DOT);
             case '-' -> addToken(TokenType.MINUS);
@@ -71,7 +102,7 @@ public class Scanner {
                     while (peek() != '*' && peekNext() != '/' && !isAtEnd()) advance();
 
                     if (isAtEnd()) {
-                        Lox.error(line, "Unterminated multiline comment.");
+                        reporter.error(line, "Unterminated multiline comment.");
                         return;
                     }
 
@@ -93,7 +124,7 @@ public class Scanner {
                 } else if (isAlpha(c)) {
                     identifier();
                 } else {
-                    Lox.error(line, "Unexpected character.");
+                    reporter.error(line, "Unexpected character.");
                 }
             }
         }
@@ -128,7 +159,7 @@ public class Scanner {
         }
 
         if (isAtEnd()) {
-            Lox.error(line, "Unterminated string.");
+            reporter.error(line, "Unterminated string.");
             return;
         }
 
@@ -0,0 +1,63 @@
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+// A thread safe LRU cache of compiled scripts keyed by a hash of their source. A compact
+// cache stores its scripts as arenas, whose trees the collector can take back under memory
+// pressure, to be rebuilt on their next run.
+public class ScriptCache {
+    private final Map<String, CompiledScript> scripts;
+    private final boolean compact;
+
+    public ScriptCache(int capacity) {
+        this(capacity, false);
+    }
+
+    public ScriptCache(int capacity, boolean compact) {
+        this.compact = compact;
+        this.scripts = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, CompiledScript> eldest) {
+                return size() > capacity;
+            }
+        };
+    }
+
+    // Returns null if the source has static errors, which are sent to the reporter.
+    public CompiledScript compile(String source, ErrorReporter reporter) {
+        String key = hash(source);
+        synchronized (scripts) {
+            CompiledScript script = scripts.get(key);
+            if (script != null) return script;
+        }
+
+        // Compiled outside the lock so a slow compile doesn't hold up cache hits. Two
+        // threads may both compile the same new source, in which case one result wins.
+        CompiledScript script = CompiledScript.compile(source, reporter);
+        if (script == null) return null;
+        if (compact) script = script.compact();
+
+        synchronized (scripts) {
+            CompiledScript existing = scripts.putIfAbsent(key, script);
+            return existing != null ? existing : script;
+        }
+    }
+
+    public int size() {
+        synchronized (scripts) {
+            return scripts.size();
+        }
+    }
+
+    static String hash(String source) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            return HexFormat.of().formatHex(digest.digest(source.getBytes(StandardCharsets.UTF_8)));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not available", e);
+        }
+    }
+}
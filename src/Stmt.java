@@ -1,6 +1,6 @@
 import java.util.List;
 
-abstract class Stmt {
+abstract sealed class Stmt permits Stmt.Block, Stmt.Class, Stmt.If, Stmt.Expression, Stmt.Function, Stmt.Return, Stmt.Var, Stmt.Print, Stmt.While, Stmt.Import {
     interface Visitor<R> {
          R visitBlockStmt(Block stmt) throws RuntimeError;
          R visitClassStmt(Class stmt) throws RuntimeError;
@@ -11,9 +11,28 @@ abstract class Stmt {
          R visitVarStmt(Var stmt) throws RuntimeError;
          R visitPrintStmt(Print stmt) throws RuntimeError;
          R visitWhileStmt(While stmt) throws RuntimeError;
+         R visitImportStmt(Import stmt) throws RuntimeError;
      }
-    static class Block extends Stmt {
+
+    static final int BLOCK = 0;
+    static final int CLASS = 1;
+    static final int IF = 2;
+    static final int EXPRESSION = 3;
+    static final int FUNCTION = 4;
+    static final int RETURN = 5;
+    static final int VAR = 6;
+    static final int PRINT = 7;
+    static final int WHILE = 8;
+    static final int IMPORT = 9;
+
+    final int kind;
+
+    Stmt(int kind) {
+        this.kind = kind;
+    }
+    static final class Block extends Stmt {
          Block(List<Stmt> statements) {
+            super(BLOCK);
             this.statements = statements;
         }
 
@@ -24,8 +43,9 @@ abstract class Stmt {
 
         final List<Stmt> statements;
     }
-    static class Class extends Stmt {
+    static final class Class extends Stmt {
          Class(Token name, Expr.Variable superclass, List<Stmt.Function> methods) {
+            super(CLASS);
             this.name = name;
             this.superclass = superclass;
             this.methods = methods;
@@ -39,9 +59,13 @@ abstract class Stmt {
         final Token name;
         final Expr.Variable superclass;
         final List<Stmt.Function> methods;
+
+        Binding binding;
+        Binding superBinding;
     }
-    static class If extends Stmt {
+    static final class If extends Stmt {
          If(Expr condition, Stmt thenBranch, Stmt elseBranch) {
+            super(IF);
             this.condition = condition;
             this.thenBranch = thenBranch;
             this.elseBranch = elseBranch;
@@ -56,8 +80,9 @@ abstract class Stmt {
         final Stmt thenBranch;
         final Stmt elseBranch;
     }
-    static class Expression extends Stmt {
+    static final class Expression extends Stmt {
          Expression(Expr expression) {
+            super(EXPRESSION);
             this.expression = expression;
         }
 
@@ -68,8 +93,9 @@ abstract class Stmt {
 
         final Expr expression;
     }
-    static class Function extends Stmt {
+    static final class Function extends Stmt {
          Function(Token name, List<Token> params, List<Stmt> body) {
+            super(FUNCTION);
             this.name = name;
             this.params = params;
             this.body = body;
@@ -83,9 +109,17 @@ abstract class Stmt {
         final Token name;
         final List<Token> params;
         final List<Stmt> body;
+
+        Binding binding;
+        Binding receiver;
+        Binding[] parameters;
+        Binding[] captures;
+        int frameSize;
+        LazyBody lazy;
     }
-    static class Return extends Stmt {
+    static final class Return extends Stmt {
          Return(Token keyword, Expr value) {
+            super(RETURN);
             this.keyword = keyword;
             this.value = value;
         }
@@ -98,8 +132,9 @@ abstract class Stmt {
         final Token keyword;
         final Expr value;
     }
-    static class Var extends Stmt {
+    static final class Var extends Stmt {
          Var(Token name, Expr initializer) {
+            super(VAR);
             this.name = name;
             this.initializer = initializer;
         }
@@ -111,9 +146,12 @@ abstract class Stmt {
 
         final Token name;
         final Expr initializer;
+
+        Binding binding;
     }
-    static class Print extends Stmt {
+    static final class Print extends Stmt {
          Print(Expr expression) {
+            super(PRINT);
             this.expression = expression;
         }
 
@@ -124,8 +162,10 @@ abstract class Stmt {
 
         final Expr expression;
     }
-    static class While extends Stmt {
-         While(Expr condition, Stmt body) {
+    static final class While extends Stmt {
+         While(Token keyword, Expr condition, Stmt body) {
+            super(WHILE);
+            this.keyword = keyword;
             this.condition = condition;
             this.body = body;
         }
@@ -135,9 +175,25 @@ abstract class Stmt {
             return visitor.visitWhileStmt(this);
         }
 
+        final Token keyword;
         final Expr condition;
         final Stmt body;
     }
+    static final class Import extends Stmt {
+         Import(Token keyword, Token path) {
+            super(IMPORT);
+            this.keyword = keyword;
+            this.path = path;
+        }
+
+        @Override
+        <R> R accept(Visitor<R> visitor) throws RuntimeError {
+            return visitor.visitImportStmt(this);
+        }
+
+        final Token keyword;
+        final Token path;
+    }
 
   abstract <R> R accept(Visitor<R> visitor) throws RuntimeError;
 }
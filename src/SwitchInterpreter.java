@@ -0,0 +1,52 @@
+import java.nio.file.Path;
+import java.util.Map;
+
+// An Interpreter that dispatches on each node's kind with a switch rather than through
+// accept and a visit method. In any real script both of those calls see every node type,
+// so the JIT can inline neither, whereas each case here calls one method it knows.
+// Selected with -Dlox.dispatch=switch; tool/src/DispatchBenchmark compares the two.
+class SwitchInterpreter extends Interpreter {
+    SwitchInterpreter(ErrorReporter reporter, LoxOutput out, Environment globals,
+                      Map<Path, LoxModule.Instance> modules) {
+        super(reporter, out, globals, modules);
+    }
+
+    @Override
+    Object evaluate(Expr expr) throws RuntimeError {
+        return switch (expr.kind) {
+            case Expr.ASSIGN -> visitAssignExpr((Expr.Assign) expr);
+            case Expr.BINARY -> visitBinaryExpr((Expr.Binary) expr);
+            case Expr.CALL -> visitCallExpr((Expr.Call) expr);
+            case Expr.GET -> visitGetExpr((Expr.Get) expr);
+            case Expr.SET -> visitSetExpr((Expr.Set) expr);
+            case Expr.SUPER -> visitSuperExpr((Expr.Super) expr);
+            case Expr.THIS -> visitThisExpr((Expr.This) expr);
+            case Expr.GROUPING -> visitGroupingExpr((Expr.Grouping) expr);
+            case Expr.LITERAL -> visitLiteralExpr((Expr.Literal) expr);
+            case Expr.LOGICAL -> visitLogicalExpr((Expr.Logical) expr);
+            case Expr.VARIABLE -> visitVariableExpr((Expr.Variable) expr);
+            case Expr.UNARY -> visitUnaryExpr((Expr.Unary) expr);
+            case Expr.ARRAY_LITERAL -> visitArrayLiteralExpr((Expr.ArrayLiteral) expr);
+            case Expr.INDEX -> visitIndexExpr((Expr.Index) expr);
+            case Expr.INDEX_SET -> visitIndexSetExpr((Expr.IndexSet) expr);
+            default -> throw new IllegalStateException("Unknown expression kind " + expr.kind + ".");
+        };
+    }
+
+    @Override
+    void execute(Stmt statement) throws RuntimeError {
+        switch (statement.kind) {
+            case Stmt.BLOCK -> visitBlockStmt((Stmt.Block) statement);
+            case Stmt.CLASS -> visitClassStmt((Stmt.Class) statement);
+            case Stmt.IF -> visitIfStmt((Stmt.If) statement);
+            case Stmt.EXPRESSION -> visitExpressionStmt((Stmt.Expression) statement);
+            case Stmt.FUNCTION -> visitFunctionStmt((Stmt.Function) statement);
+            case Stmt.RETURN -> visitReturnStmt((Stmt.Return) statement);
+            case Stmt.VAR -> visitVarStmt((Stmt.Var) statement);
+            case Stmt.PRINT -> visitPrintStmt((Stmt.Print) statement);
+            case Stmt.WHILE -> visitWhileStmt((Stmt.While) statement);
+            case Stmt.IMPORT -> visitImportStmt((Stmt.Import) statement);
+            default -> throw new IllegalStateException("Unknown statement kind " + statement.kind + ".");
+        }
+    }
+}
@@ -0,0 +1,100 @@
+import jdk.incubator.vector.DoubleVector;
+import jdk.incubator.vector.VectorOperators;
+import jdk.incubator.vector.VectorSpecies;
+
+// Only loaded by NumericKernels when the incubator module is present. Sums and dot
+// products are accumulated lane by lane, so they can differ from the scalar versions
+// in the last bits.
+class VectorKernels extends NumericKernels {
+    private static final VectorSpecies<Double> SPECIES = DoubleVector.SPECIES_PREFERRED;
+
+    @Override
+    void add(double[] a, double[] b, double[] result, int length) {
+        int i = 0;
+        for (int bound = SPECIES.loopBound(length); i < bound; i += SPECIES.length()) {
+            DoubleVector.fromArray(SPECIES, a, i).add(DoubleVector.fromArray(SPECIES, b, i)).intoArray(result, i);
+        }
+        for (; i < length; i++) {
+            result[i] = a[i] + b[i];
+        }
+    }
+
+    @Override
+    void multiply(double[] a, double[] b, double[] result, int length) {
+        int i = 0;
+        for (int bound = SPECIES.loopBound(length); i < bound; i += SPECIES.length()) {
+            DoubleVector.fromArray(SPECIES, a, i).mul(DoubleVector.fromArray(SPECIES, b, i)).intoArray(result, i);
+        }
+        for (; i < length; i++) {
+            result[i] = a[i] * b[i];
+        }
+    }
+
+    @Override
+    void scaledAdd(double alpha, double[] x, double[] y, double[] result, int length) {
+        int i = 0;
+        DoubleVector scale = DoubleVector.broadcast(SPECIES, alpha);
+        for (int bound = SPECIES.loopBound(length); i < bound; i += SPECIES.length()) {
+            DoubleVector.fromArray(SPECIES, x, i).mul(scale).add(DoubleVector.fromArray(SPECIES, y, i)).intoArray(result, i);
+        }
+        for (; i < length; i++) {
+            result[i] = alpha * x[i] + y[i];
+        }
+    }
+
+    @Override
+    double dot(double[] a, double[] b, int length) {
+        int i = 0;
+        DoubleVector sums = DoubleVector.zero(SPECIES);
+        for (int bound = SPECIES.loopBound(length); i < bound; i += SPECIES.length()) {
+            sums = DoubleVector.fromArray(SPECIES, a, i).fma(DoubleVector.fromArray(SPECIES, b, i), sums);
+        }
+        double sum = sums.reduceLanes(VectorOperators.ADD);
+        for (; i < length; i++) {
+            sum += a[i] * b[i];
+        }
+        return sum;
+    }
+
+    @Override
+    double sum(double[] a, int length) {
+        int i = 0;
+        DoubleVector sums = DoubleVector.zero(SPECIES);
+        for (int bound = SPECIES.loopBound(length); i < bound; i += SPECIES.length()) {
+            sums = sums.add(DoubleVector.fromArray(SPECIES, a, i));
+        }
+        double sum = sums.reduceLanes(VectorOperators.ADD);
+        for (; i < length; i++) {
+            sum += a[i];
+        }
+        return sum;
+    }
+
+    @Override
+    double min(double[] a, int length) {
+        int i = 0;
+        DoubleVector mins = DoubleVector.broadcast(SPECIES, a[0]);
+        for (int bound = SPECIES.loopBound(length); i < bound; i += SPECIES.length()) {
+            mins = mins.min(DoubleVector.fromArray(SPECIES, a, i));
+        }
+        double min = mins.reduceLanes(VectorOperators.MIN);
+        for (; i < length; i++) {
+            min = Math.min(min, a[i]);
+        }
+        return min;
+    }
+
+    @Override
+    double max(double[] a, int length) {
+        int i = 0;
+        DoubleVector maxes = DoubleVector.broadcast(SPECIES, a[0]);
+        for (int bound = SPECIES.loopBound(length); i < bound; i += SPECIES.length()) {
+            maxes = maxes.max(DoubleVector.fromArray(SPECIES, a, i));
+        }
+        double max = maxes.reduceLanes(VectorOperators.MAX);
+        for (; i < length; i++) {
+            max = Math.max(max, a[i]);
+        }
+        return max;
+    }
+}
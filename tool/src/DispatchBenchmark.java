@@ -0,0 +1,116 @@
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.io.Writer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+// Compares visitor dispatch with SwitchInterpreter's switch dispatch. Each style runs in a
+// JVM of its own, so neither inherits type profiles the other left behind. Build it along
+// with the interpreter, which needs the incubating Vector API module, e.g.
+//
+//   javac --add-modules jdk.incubator.vector -d out src/*.java tool/src/DispatchBenchmark.java
+//   java --add-modules jdk.incubator.vector -cp out DispatchBenchmark [script.lox ...]
+//
+// With no scripts it runs a mix of arithmetic, calls, closures and method calls.
+public class DispatchBenchmark {
+    private static final String[] STYLES = {"visitor", "switch"};
+    private static final int WARMUP = 10;
+    private static final int RUNS = 20;
+
+    private static final String WORKLOAD = """
+            fun fib(n) {
+              if (n < 2) return n;
+              return fib(n - 1) + fib(n - 2);
+            }
+
+            fun counter() {
+              var count = 0;
+              fun increment() {
+                count = count + 1;
+                return count;
+              }
+              return increment;
+            }
+
+            class Point {
+              init(x, y) {
+                this.x = x;
+                this.y = y;
+              }
+
+              add(other) {
+                return Point(this.x + other.x, this.y + other.y);
+              }
+            }
+
+            var total = fib(20);
+            var increment = counter();
+            for (var i = 0; i < 20000; i = i + 1) increment();
+            var p = Point(0, 0);
+            var step = Point(1, 2);
+            for (var i = 0; i < 20000; i = i + 1) {
+              p = p.add(step);
+              if (p.x > 10 and p.y > 10 or !true) total = total + 1;
+            }
+            """;
+
+    public static void main(String[] args) throws IOException, InterruptedException {
+        if (args.length == 2 && args[0].equals("--run")) {
+            run(Path.of(args[1]));
+            return;
+        }
+
+        List<Path> scripts = new ArrayList<>();
+        if (args.length == 0) {
+            Path workload = Files.createTempFile("dispatch", ".lox");
+            workload.toFile().deleteOnExit();
+            Files.writeString(workload, WORKLOAD);
+            scripts.add(workload);
+        } else {
+            for (String arg : args) {
+                scripts.add(Path.of(arg));
+            }
+        }
+
+        String java = Path.of(System.getProperty("java.home"), "bin", "java").toString();
+        System.out.printf("%-32s %12s %12s%n", "script", "visitor ms", "switch ms");
+        for (Path script : scripts) {
+            String[] results = new String[STYLES.length];
+            for (int i = 0; i < STYLES.length; i++) {
+                Process process = new ProcessBuilder(java, "-Dlox.dispatch=" + STYLES[i],
+                        "--add-modules", "jdk.incubator.vector",
+                        "-cp", System.getProperty("java.class.path"),
+                        "DispatchBenchmark", "--run", script.toString())
+                        .redirectError(ProcessBuilder.Redirect.DISCARD)
+                        .start();
+                results[i] = new String(process.getInputStream().readAllBytes()).trim();
+                if (process.waitFor() != 0) results[i] = "failed";
+            }
+            String name = args.length == 0 ? "(built in)" : script.getFileName().toString();
+            System.out.printf("%-32s %12s %12s%n", name, results[0], results[1]);
+        }
+    }
+
+    // Prints the median time of one run, after warming up.
+    private static void run(Path path) throws IOException {
+        String source = Files.readString(path);
+        PrintWriter errors = new PrintWriter(Writer.nullWriter());
+
+        long[] times = new long[RUNS];
+        for (int i = 0; i < WARMUP + RUNS; i++) {
+            LoxRuntime runtime = new LoxRuntime(Writer.nullWriter(), errors);
+            CompiledScript script = runtime.compile(source);
+            if (script == null) System.exit(65);
+
+            long start = System.nanoTime();
+            runtime.run(script);
+            if (i >= WARMUP) times[i - WARMUP] = System.nanoTime() - start;
+        }
+
+        Arrays.sort(times);
+        System.out.printf("%.2f%n", times[RUNS / 2] / 1e6);
+    }
+}
@@ -6,54 +6,85 @@ import java.util.List;
 
 public class GenerateAst {
     public static void main(String[] args) throws IOException {
-        if (args.length != 1) {
-            System.err.println("Usage: generate_ast <output_directory>");
+        if (args.length < 1 || args.length > 2 || (args.length == 2 && !args[1].equals("--arena"))) {
+            System.err.println("Usage: generate_ast <output_directory> [--arena]");
             System.exit(64);
         }
         String outputDir = args[0];
-        defineAst(outputDir, "Expr", Arrays.asList(
-                "Assign: Token name, Expr value",
+        List<String> exprTypes = Arrays.asList(
+                "Assign: Token name, Expr value | Binding binding",
                 "Binary: Expr left, Token operator, Expr right",
                 "Call: Expr callee, Token paren, List<Expr> arguments",
                 "Get: Expr object, Token name",
                 "Set: Expr object, Token name, Expr value",
-                "Super: Token keyword, Token method",
-                "This: Token keyword",
+                "Super: Token keyword, Token method | Binding binding, Binding thisBinding",
+                "This: Token keyword | Binding binding",
                 "Grouping: Expr expression",
                 "Literal: Object value",
                 "Logical: Expr left, Token operator, Expr right",
-                "Variable: Token name",
-                "Unary: Token operator, Expr right"
-        ));
-        defineAst(outputDir, "Stmt", Arrays.asList(
+                "Variable: Token name | Binding binding",
+                "Unary: Token operator, Expr right",
+                "ArrayLiteral: Token bracket, List<Expr> elements",
+                "Index: Expr object, Token bracket, Expr index",
+                "IndexSet: Expr object, Token bracket, Expr index, Expr value"
+        );
+        List<String> stmtTypes = Arrays.asList(
                 "Block: List<Stmt> statements",
-                "Class: Token name, Expr.Variable superclass, List<Stmt.Function> methods",
+                "Class: Token name, Expr.Variable superclass, List<Stmt.Function> methods | Binding binding, Binding superBinding",
                 "If: Expr condition, Stmt thenBranch, Stmt elseBranch",
                 "Expression: Expr expression",
-                "Function: Token name, List<Token> params, List<Stmt> body",
+                "Function: Token name, List<Token> params, List<Stmt> body | Binding binding, Binding receiver, Binding[] parameters, Binding[] captures, int frameSize, LazyBody lazy",
                 "Return: Token keyword, Expr value",
-                "Var: Token name, Expr initializer",
+                "Var: Token name, Expr initializer | Binding binding",
                 "Print: Expr expression",
-                "While: Expr condition, Stmt body"
-        ));
+                "While: Token keyword, Expr condition, Stmt body",
+                "Import: Token keyword, Token path"
+        );
 
+        defineAst(outputDir, "Expr", exprTypes);
+        defineAst(outputDir, "Stmt", stmtTypes);
+        // The arena form is optional: it is only needed by code that keeps compact copies
+        if (args.length == 2) defineArena(outputDir, exprTypes, stmtTypes);
     }
 
     private static void defineAst(String outputDir, String baseName, List<String> types) throws IOException {
         String path = outputDir + "/" + baseName + ".java";
         PrintWriter writer = new PrintWriter(path, StandardCharsets.UTF_8);
 
+        List<String> classNames = new java.util.ArrayList<>();
+        for (String type : types) {
+            classNames.add(baseName + "." + type.split(":")[0].trim());
+        }
+
         writer.println("import java.util.List;");
         writer.println();
-        writer.println("abstract class " + baseName + " {");
+        writer.println("abstract sealed class " + baseName + " permits " + String.join(", ", classNames) + " {");
 
         defineVisitor(writer, baseName, types);
 
+        // Every node knows which type it is, so code can dispatch on it with a switch
+        writer.println();
+        for (int i = 0; i < types.size(); i++) {
+            writer.println("    static final int " + kind(types.get(i)) + " = " + i + ";");
+        }
+        writer.println();
+        writer.println("    final int kind;");
+        writer.println();
+        writer.println("    " + baseName + "(int kind) {");
+        writer.println("        this.kind = kind;");
+        writer.println("    }");
+
         // The AST classes
         for (String type : types) {
             String className = type.split(":")[0].trim();
             String fields = type.split(":")[1].trim();
-            defineType(writer, baseName, className, fields);
+            String resolved = null;
+            // Fields after a '|' are filled in by the Resolver rather than the Parser
+            if (fields.contains("|")) {
+                resolved = fields.split("\\|")[1].trim();
+                fields = fields.split("\\|")[0].trim();
+            }
+            defineType(writer, baseName, className, kind(type), fields, resolved);
         }
 
         writer.println();
@@ -72,11 +103,12 @@ public class GenerateAst {
         writer.println("     }");
     }
 
-    private static void defineType(PrintWriter writer, String baseName, String className, String fields) {
-        writer.println("    static class " + className + " extends " + baseName + " {");
+    private static void defineType(PrintWriter writer, String baseName, String className, String kind, String fields, String resolved) {
+        writer.println("    static final class " + className + " extends " + baseName + " {");
 
         // Constructor
         writer.println("         " + className + "(" + fields + ") {");
+        writer.println("            super(" + kind + ");");
 
         // Store parameters in the fields
         for (String field : fields.split(",")) {
@@ -99,7 +131,400 @@ public class GenerateAst {
             writer.println("        final " + field.trim() + ";");
         }
 
+        if (resolved != null) {
+            writer.println();
+            for (String field : resolved.split(",")) {
+                writer.println("        " + field.trim() + ";");
+            }
+        }
+
+        writer.println("    }");
+    }
+
+
+    // Writes AstArena, which packs a whole program into int arrays: nodes as a kind followed
+    // by one int per field, lists as a length followed by the elements, and tokens and
+    // bindings as fixed size records. Strings and other values go in side tables.
+    private static void defineArena(String outputDir, List<String> exprTypes, List<String> stmtTypes) throws IOException {
+        String path = outputDir + "/AstArena.java";
+        PrintWriter writer = new PrintWriter(path, StandardCharsets.UTF_8);
+
+        writer.println("import java.util.ArrayList;");
+        writer.println("import java.util.Arrays;");
+        writer.println("import java.util.HashMap;");
+        writer.println("import java.util.IdentityHashMap;");
+        writer.println("import java.util.List;");
+        writer.println("import java.util.Map;");
+        writer.println();
+        writer.println("// Generated by GenerateAst --arena. A program's AST packed into int arrays, which takes a");
+        writer.println("// fraction of the memory of the tree. Nodes are a kind followed by one int per field,");
+        writer.println("// children are referred to by their offset and null is -1. lower() rebuilds the tree.");
+        writer.println("final class AstArena {");
+
+        int kind = 0;
+        for (String type : exprTypes) {
+            writer.println("    private static final int " + constant(type, "Expr") + " = " + kind++ + ";");
+        }
+        for (String type : stmtTypes) {
+            writer.println("    private static final int " + constant(type, "Stmt") + " = " + kind++ + ";");
+        }
+
+        writer.println();
+        writer.println("    private final int[] nodes;");
+        writer.println("    private final int[] lists;");
+        writer.println("    // Four ints per token: type, lexeme, literal and line");
+        writer.println("    private final int[] tokens;");
+        writer.println("    // Three ints per binding: kind, index or name, and whether it is captured");
+        writer.println("    private final int[] bindings;");
+        writer.println("    private final String[] strings;");
+        writer.println("    private final Object[] values;");
+        writer.println("    private final int root;");
+        writer.println();
+        writer.println("    private AstArena(Encoder encoder, int root) {");
+        writer.println("        this.nodes = Arrays.copyOf(encoder.nodes, encoder.nodeCount);");
+        writer.println("        this.lists = Arrays.copyOf(encoder.lists, encoder.listCount);");
+        writer.println("        this.tokens = Arrays.copyOf(encoder.tokens, encoder.tokenCount);");
+        writer.println("        this.bindings = Arrays.copyOf(encoder.bindings, encoder.bindingCount);");
+        writer.println("        this.strings = encoder.strings.toArray(new String[0]);");
+        writer.println("        this.values = encoder.values.toArray();");
+        writer.println("        this.root = root;");
+        writer.println("    }");
+        writer.println();
+        writer.println("    static AstArena of(List<Stmt> statements) {");
+        writer.println("        Encoder encoder = new Encoder();");
+        writer.println("        int root = encoder.stmts(statements);");
+        writer.println("        return new AstArena(encoder, root);");
+        writer.println("    }");
+        writer.println();
+        writer.println("    // A fresh tree each time, sharing nothing with other lowerings.");
+        writer.println("    List<Stmt> lower() {");
+        writer.println("        return lower(0);");
+        writer.println("    }");
+        writer.println();
+        writer.println("    // With lineDelta added to the line of every token, for code that has moved.");
+        writer.println("    List<Stmt> lower(int lineDelta) {");
+        writer.println("        return new Lowering(lineDelta).lowerStmts(root);");
         writer.println("    }");
+
+        defineEncoder(writer, exprTypes, stmtTypes);
+        defineLowering(writer, exprTypes, stmtTypes);
+
+        writer.println("}");
+        writer.close();
     }
 
+    private static void defineEncoder(PrintWriter writer, List<String> exprTypes, List<String> stmtTypes) {
+        writer.println();
+        writer.println("    private static class Encoder implements Expr.Visitor<Integer>, Stmt.Visitor<Integer> {");
+        writer.println("        int[] nodes = new int[1024];");
+        writer.println("        int nodeCount = 0;");
+        writer.println("        int[] lists = new int[256];");
+        writer.println("        int listCount = 0;");
+        writer.println("        int[] tokens = new int[1024];");
+        writer.println("        int tokenCount = 0;");
+        writer.println("        int[] bindings = new int[64];");
+        writer.println("        int bindingCount = 0;");
+        writer.println("        final List<String> strings = new ArrayList<>();");
+        writer.println("        final List<Object> values = new ArrayList<>();");
+        writer.println("        private final Map<String, Integer> stringIds = new HashMap<>();");
+        writer.println("        private final Map<Binding, Integer> bindingIds = new IdentityHashMap<>();");
+        writer.println("        // Globals are bound by name, so every use of one name can share a Binding");
+        writer.println("        private final Map<String, Integer> globalIds = new HashMap<>();");
+        writer.println();
+        writer.println("        private int node(int... fields) {");
+        writer.println("            if (nodeCount + fields.length > nodes.length) nodes = Arrays.copyOf(nodes, Math.max(nodes.length * 2, nodeCount + fields.length));");
+        writer.println("            int at = nodeCount;");
+        writer.println("            System.arraycopy(fields, 0, nodes, at, fields.length);");
+        writer.println("            nodeCount += fields.length;");
+        writer.println("            return at;");
+        writer.println("        }");
+        writer.println();
+        writer.println("        private int list(int[] items) {");
+        writer.println("            if (listCount + items.length + 1 > lists.length) lists = Arrays.copyOf(lists, Math.max(lists.length * 2, listCount + items.length + 1));");
+        writer.println("            int at = listCount;");
+        writer.println("            lists[at] = items.length;");
+        writer.println("            System.arraycopy(items, 0, lists, at + 1, items.length);");
+        writer.println("            listCount += items.length + 1;");
+        writer.println("            return at;");
+        writer.println("        }");
+        writer.println();
+        writer.println("        int expr(Expr expr) {");
+        writer.println("            if (expr == null) return -1;");
+        writer.println("            try {");
+        writer.println("                return expr.accept(this);");
+        writer.println("            } catch (RuntimeError e) {");
+        writer.println("                // Encoding never fails");
+        writer.println("                throw new IllegalStateException(e);");
+        writer.println("            }");
+        writer.println("        }");
+        writer.println();
+        writer.println("        int stmt(Stmt stmt) {");
+        writer.println("            if (stmt == null) return -1;");
+        writer.println("            try {");
+        writer.println("                return stmt.accept(this);");
+        writer.println("            } catch (RuntimeError e) {");
+        writer.println("                throw new IllegalStateException(e);");
+        writer.println("            }");
+        writer.println("        }");
+        writer.println();
+        writer.println("        int exprs(List<Expr> exprs) {");
+        writer.println("            int[] items = new int[exprs.size()];");
+        writer.println("            for (int i = 0; i < items.length; i++) items[i] = expr(exprs.get(i));");
+        writer.println("            return list(items);");
+        writer.println("        }");
+        writer.println();
+        writer.println("        int stmts(List<? extends Stmt> stmts) {");
+        writer.println("            int[] items = new int[stmts.size()];");
+        writer.println("            for (int i = 0; i < items.length; i++) items[i] = stmt(stmts.get(i));");
+        writer.println("            return list(items);");
+        writer.println("        }");
+        writer.println();
+        writer.println("        int token(Token token) {");
+        writer.println("            if (tokenCount + 4 > tokens.length) tokens = Arrays.copyOf(tokens, tokens.length * 2);");
+        writer.println("            int at = tokenCount;");
+        writer.println("            tokens[at] = token.type.ordinal();");
+        writer.println("            tokens[at + 1] = string(token.lexeme);");
+        writer.println("            tokens[at + 2] = value(token.literal);");
+        writer.println("            tokens[at + 3] = token.line;");
+        writer.println("            tokenCount += 4;");
+        writer.println("            return at;");
+        writer.println("        }");
+        writer.println();
+        writer.println("        int tokens(List<Token> tokens) {");
+        writer.println("            int[] items = new int[tokens.size()];");
+        writer.println("            for (int i = 0; i < items.length; i++) items[i] = token(tokens.get(i));");
+        writer.println("            return list(items);");
+        writer.println("        }");
+        writer.println();
+        writer.println("        int binding(Binding binding) {");
+        writer.println("            if (binding == null) return -1;");
+        writer.println("            boolean global = binding.kind == Binding.Kind.GLOBAL;");
+        writer.println("            Integer seen = global ? globalIds.get(binding.name) : bindingIds.get(binding);");
+        writer.println("            if (seen != null) return seen;");
+        writer.println();
+        writer.println("            if (bindingCount + 3 > bindings.length) bindings = Arrays.copyOf(bindings, bindings.length * 2);");
+        writer.println("            int at = bindingCount;");
+        writer.println("            bindings[at] = binding.kind.ordinal();");
+        writer.println("            bindings[at + 1] = global ? string(binding.name) : binding.index;");
+        writer.println("            bindings[at + 2] = binding.captured ? 1 : 0;");
+        writer.println("            bindingCount += 3;");
+        writer.println("            if (global) {");
+        writer.println("                globalIds.put(binding.name, at);");
+        writer.println("            } else {");
+        writer.println("                bindingIds.put(binding, at);");
+        writer.println("            }");
+        writer.println("            return at;");
+        writer.println("        }");
+        writer.println();
+        writer.println("        int bindings(Binding[] bindings) {");
+        writer.println("            if (bindings == null) return -1;");
+        writer.println("            int[] items = new int[bindings.length];");
+        writer.println("            for (int i = 0; i < items.length; i++) items[i] = binding(bindings[i]);");
+        writer.println("            return list(items);");
+        writer.println("        }");
+        writer.println();
+        writer.println("        // A body that was never parsed is kept as its tokens, behind a flag for whether it is a");
+        writer.println("        // method. Once compiled it is an ordinary body, and there is no LazyBody to keep.");
+        writer.println("        int lazy(LazyBody lazy) {");
+        writer.println("            if (lazy == null || lazy.compiled()) return -1;");
+        writer.println("            int[] items = new int[lazy.tokens.size() + 1];");
+        writer.println("            items[0] = lazy.method ? 1 : 0;");
+        writer.println("            for (int i = 1; i < items.length; i++) items[i] = token(lazy.tokens.get(i - 1));");
+        writer.println("            return list(items);");
+        writer.println("        }");
+        writer.println();
+        writer.println("        int string(String string) {");
+        writer.println("            if (string == null) return -1;");
+        writer.println("            return stringIds.computeIfAbsent(string, s -> {");
+        writer.println("                strings.add(s);");
+        writer.println("                return strings.size() - 1;");
+        writer.println("            });");
+        writer.println("        }");
+        writer.println();
+        writer.println("        int value(Object value) {");
+        writer.println("            if (value == null) return -1;");
+        writer.println("            values.add(value);");
+        writer.println("            return values.size() - 1;");
+        writer.println("        }");
+
+        defineEncoderMethods(writer, "Expr", exprTypes);
+        defineEncoderMethods(writer, "Stmt", stmtTypes);
+        writer.println("    }");
+    }
+
+    private static void defineEncoderMethods(PrintWriter writer, String baseName, List<String> types) {
+        String parameter = baseName.toLowerCase();
+        for (String type : types) {
+            String className = type.split(":")[0].trim();
+            StringBuilder fields = new StringBuilder(constant(type, baseName));
+            for (String[] field : fields(type)) {
+                fields.append(", ").append(encode(field[0], parameter + "." + field[1]));
+            }
+
+            writer.println();
+            writer.println("        @Override");
+            writer.println("        public Integer visit" + className + baseName + "(" + baseName + "." + className + " " + parameter + ") {");
+            writer.println("            return node(" + fields + ");");
+            writer.println("        }");
+        }
+    }
+
+    private static void defineLowering(PrintWriter writer, List<String> exprTypes, List<String> stmtTypes) {
+        writer.println();
+        writer.println("    private class Lowering {");
+        writer.println("        // One Binding per arena binding, so nodes that shared one still do");
+        writer.println("        private final Binding[] lowered = new Binding[bindings.length];");
+        writer.println("        private final int lineDelta;");
+        writer.println();
+        writer.println("        Lowering(int lineDelta) {");
+        writer.println("            this.lineDelta = lineDelta;");
+        writer.println("        }");
+
+        defineLower(writer, "Expr", exprTypes);
+        defineLower(writer, "Stmt", stmtTypes);
+
+        writer.println();
+        writer.println("        private List<Expr> lowerExprs(int at) {");
+        writer.println("            List<Expr> exprs = new ArrayList<>(lists[at]);");
+        writer.println("            for (int i = 1; i <= lists[at]; i++) exprs.add(lowerExpr(lists[at + i]));");
+        writer.println("            return exprs;");
+        writer.println("        }");
+        writer.println();
+        writer.println("        @SuppressWarnings(\"unchecked\")");
+        writer.println("        private <T extends Stmt> List<T> lowerStmts(int at) {");
+        writer.println("            List<T> stmts = new ArrayList<>(lists[at]);");
+        writer.println("            for (int i = 1; i <= lists[at]; i++) stmts.add((T) lowerStmt(lists[at + i]));");
+        writer.println("            return stmts;");
+        writer.println("        }");
+        writer.println();
+        writer.println("        private Token lowerToken(int at) {");
+        writer.println("            String lexeme = tokens[at + 1] < 0 ? null : strings[tokens[at + 1]];");
+        writer.println("            return new Token(TokenType.values()[tokens[at]], lexeme, lowerValue(tokens[at + 2]), tokens[at + 3] + lineDelta);");
+        writer.println("        }");
+        writer.println();
+        writer.println("        private List<Token> lowerTokens(int at) {");
+        writer.println("            List<Token> tokens = new ArrayList<>(lists[at]);");
+        writer.println("            for (int i = 1; i <= lists[at]; i++) tokens.add(lowerToken(lists[at + i]));");
+        writer.println("            return tokens;");
+        writer.println("        }");
+        writer.println();
+        writer.println("        private Binding lowerBinding(int at) {");
+        writer.println("            if (at < 0) return null;");
+        writer.println("            Binding binding = lowered[at];");
+        writer.println("            if (binding != null) return binding;");
+        writer.println();
+        writer.println("            Binding.Kind kind = Binding.Kind.values()[bindings[at]];");
+        writer.println("            if (kind == Binding.Kind.GLOBAL) {");
+        writer.println("                binding = Binding.global(strings[bindings[at + 1]]);");
+        writer.println("            } else {");
+        writer.println("                binding = new Binding(kind, bindings[at + 1]);");
+        writer.println("                binding.captured = bindings[at + 2] == 1;");
+        writer.println("            }");
+        writer.println("            lowered[at] = binding;");
+        writer.println("            return binding;");
+        writer.println("        }");
+        writer.println();
+        writer.println("        private Binding[] lowerBindings(int at) {");
+        writer.println("            if (at < 0) return null;");
+        writer.println("            Binding[] result = new Binding[lists[at]];");
+        writer.println("            for (int i = 0; i < result.length; i++) result[i] = lowerBinding(lists[at + i + 1]);");
+        writer.println("            return result;");
+        writer.println("        }");
+        writer.println();
+        writer.println("        private LazyBody lowerLazy(int at) {");
+        writer.println("            if (at < 0) return null;");
+        writer.println("            List<Token> body = new ArrayList<>(lists[at] - 1);");
+        writer.println("            for (int i = 2; i <= lists[at]; i++) body.add(lowerToken(lists[at + i]));");
+        writer.println("            return new LazyBody(body, lists[at + 1] == 1);");
+        writer.println("        }");
+        writer.println();
+        writer.println("        private Object lowerValue(int at) {");
+        writer.println("            return at < 0 ? null : values[at];");
+        writer.println("        }");
+        writer.println("    }");
+    }
+
+    private static void defineLower(PrintWriter writer, String baseName, List<String> types) {
+        String variable = baseName.toLowerCase();
+        writer.println();
+        writer.println("        private " + baseName + " lower" + baseName + "(int at) {");
+        writer.println("            if (at < 0) return null;");
+        writer.println("            switch (nodes[at]) {");
+        for (String type : types) {
+            String className = type.split(":")[0].trim();
+            List<String[]> fields = fields(type);
+            int resolvedFrom = type.contains("|") ? type.split(":")[1].split("\\|")[0].split(",").length : fields.size();
+
+            StringBuilder arguments = new StringBuilder();
+            for (int i = 0; i < resolvedFrom; i++) {
+                if (i > 0) arguments.append(", ");
+                arguments.append(lower(fields.get(i)[0], "nodes[at + " + (i + 1) + "]"));
+            }
+
+            writer.println("                case " + constant(type, baseName) + " -> {");
+            writer.println("                    " + baseName + "." + className + " " + variable + " = new " + baseName + "." + className + "(" + arguments + ");");
+            for (int i = resolvedFrom; i < fields.size(); i++) {
+                String[] field = fields.get(i);
+                writer.println("                    " + variable + "." + field[1] + " = " + lower(field[0], "nodes[at + " + (i + 1) + "]") + ";");
+            }
+            writer.println("                    return " + variable + ";");
+            writer.println("                }");
+        }
+        writer.println("            }");
+        writer.println("            throw new IllegalStateException(\"Not a " + variable + " at \" + at + \".\");");
+        writer.println("        }");
+    }
+
+    // The type and name of every field of an AST type, the Resolver's last.
+    private static List<String[]> fields(String type) {
+        List<String[]> fields = new java.util.ArrayList<>();
+        for (String field : type.split(":")[1].replace("|", ",").split(",")) {
+            String[] parts = field.trim().split(" ");
+            fields.add(new String[]{parts[0], parts[1]});
+        }
+        return fields;
+    }
+
+    private static String constant(String type, String baseName) {
+        return kind(type) + "_" + baseName.toUpperCase();
+    }
+
+    private static String kind(String type) {
+        String className = type.split(":")[0].trim();
+        return className.replaceAll("([a-z])([A-Z])", "$1_$2").toUpperCase();
+    }
+
+    private static String encode(String type, String value) {
+        switch (type) {
+            case "Token": return "token(" + value + ")";
+            case "List<Token>": return "tokens(" + value + ")";
+            case "Binding": return "binding(" + value + ")";
+            case "Binding[]": return "bindings(" + value + ")";
+            case "LazyBody": return "lazy(" + value + ")";
+            case "int": return value;
+        }
+        if (type.startsWith("List<Expr")) return "exprs(" + value + ")";
+        if (type.startsWith("List<Stmt")) return "stmts(" + value + ")";
+        if (type.startsWith("Expr")) return "expr(" + value + ")";
+        if (type.startsWith("Stmt")) return "stmt(" + value + ")";
+        return "value(" + value + ")";
+    }
+
+    private static String lower(String type, String at) {
+        switch (type) {
+            case "Token": return "lowerToken(" + at + ")";
+            case "List<Token>": return "lowerTokens(" + at + ")";
+            case "Binding": return "lowerBinding(" + at + ")";
+            case "Binding[]": return "lowerBindings(" + at + ")";
+            case "LazyBody": return "lowerLazy(" + at + ")";
+            case "int": return at;
+            case "Object": return "lowerValue(" + at + ")";
+        }
+        if (type.startsWith("List<Expr")) return "lowerExprs(" + at + ")";
+        if (type.startsWith("List<Stmt")) return "lowerStmts(" + at + ")";
+        if (type.equals("Expr") || type.equals("Stmt")) return "lower" + type + "(" + at + ")";
+        if (type.startsWith("Expr")) return "(" + type + ") lowerExpr(" + at + ")";
+        if (type.startsWith("Stmt")) return "(" + type + ") lowerStmt(" + at + ")";
+        return "(" + type + ") lowerValue(" + at + ")";
+    }
 }